@@ -15,15 +15,12 @@
  */
 package io.yupiik.tools.dev.api;
 
-import jakarta.json.JsonArrayBuilder;
 import jakarta.json.JsonBuilderFactory;
-import jakarta.json.JsonObjectBuilder;
 import jakarta.json.JsonValue;
 import jakarta.json.spi.JsonProvider;
 
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collector;
 
 public record ReactUi(String type, Map<String, Object> props,
                       List<Object> children) {
@@ -33,56 +30,71 @@ public record ReactUi(String type, Map<String, Object> props,
         }
     }
 
+    /**
+     * Serializes the tree once, the result is immutable so it can be reused for every call,
+     * only the data model referenced by {@link Eval} nodes is then computed per call.
+     * It is typically done at bean initialization (in a {@code @PostConstruct} method).
+     *
+     * @param jsons    builder factory.
+     * @param provider JSON provider.
+     * @return the compiled template.
+     */
+    public Template compile(final JsonBuilderFactory jsons, final JsonProvider provider) {
+        return new Template(asJson(jsons, provider));
+    }
+
     public JsonValue asJson(final JsonBuilderFactory jsons, final JsonProvider provider) {
-        final var builder = jsons.createObjectBuilder()
-                .add("type", type)
-                .add("props", props != null ?
-                        props.entrySet().stream()
-                                .collect(Collector.of(
-                                        jsons::createObjectBuilder,
-                                        (a, i) -> {
-                                            final var key = i.getKey();
-                                            final var value = i.getValue();
-                                            if (value instanceof String s) {
-                                                a.add(key, s);
-                                            } else if (value instanceof Integer integer) {
-                                                a.add(key, integer);
-                                            } else if (value instanceof Double v) {
-                                                a.add(key, v);
-                                            } else if (value instanceof Long l) {
-                                                a.add(key, l);
-                                            } else if (value instanceof JsonValue j) {
-                                                a.add(key, j);
-                                            } else if (value instanceof ReactUi ui) {
-                                                a.add(key, ui.asJson(jsons, provider));
-                                            } else if (value instanceof ReactUi.Eval e) {
-                                                a.add(key, e.asJson(jsons));
-                                            } else {
-                                                throw new IllegalStateException("Unsupported value: " + i);
-                                            }
-                                        },
-                                        JsonObjectBuilder::addAll,
-                                        JsonObjectBuilder::build)) :
-                        JsonValue.EMPTY_JSON_OBJECT);
+        final var builder = jsons.createObjectBuilder().add("type", type);
+        if (props != null) {
+            final var json = jsons.createObjectBuilder();
+            for (final var entry : props.entrySet()) {
+                final var key = entry.getKey();
+                final var value = entry.getValue();
+                if (value instanceof String s) {
+                    json.add(key, s);
+                } else if (value instanceof Integer integer) {
+                    json.add(key, integer);
+                } else if (value instanceof Double v) {
+                    json.add(key, v);
+                } else if (value instanceof Long l) {
+                    json.add(key, l);
+                } else if (value instanceof JsonValue j) {
+                    json.add(key, j);
+                } else if (value instanceof ReactUi ui) {
+                    json.add(key, ui.asJson(jsons, provider));
+                } else if (value instanceof ReactUi.Eval e) {
+                    json.add(key, e.asJson(jsons));
+                } else {
+                    throw new IllegalStateException("Unsupported value: " + entry);
+                }
+            }
+            builder.add("props", json);
+        } else {
+            builder.add("props", JsonValue.EMPTY_JSON_OBJECT);
+        }
         if (children != null && !children.isEmpty()) {
-            builder.add("children", children.stream()
-                    .map(it -> {
-                        if (it instanceof ReactUi ui) {
-                            return ui.asJson(jsons, provider);
-                        } else if (it instanceof Eval e) {
-                            return e.asJson(jsons);
-                        } else if (it instanceof String s) {
-                            return provider.createValue(s);
-                        } else {
-                            throw new IllegalStateException("Unsupported type: " + it);
-                        }
-                    })
-                    .collect(Collector.of(
-                            jsons::createArrayBuilder,
-                            JsonArrayBuilder::add,
-                            JsonArrayBuilder::addAll,
-                            JsonArrayBuilder::build)));
+            final var json = jsons.createArrayBuilder();
+            for (final var it : children) {
+                if (it instanceof ReactUi ui) {
+                    json.add(ui.asJson(jsons, provider));
+                } else if (it instanceof Eval e) {
+                    json.add(e.asJson(jsons));
+                } else if (it instanceof String s) {
+                    json.add(provider.createValue(s));
+                } else {
+                    throw new IllegalStateException("Unsupported type: " + it);
+                }
+            }
+            builder.add("children", json);
         }
         return builder.build();
     }
+
+    /**
+     * A precompiled (immutable) UI tree.
+     *
+     * @param json the serialized tree.
+     */
+    public record Template(JsonValue json) {
+    }
 }
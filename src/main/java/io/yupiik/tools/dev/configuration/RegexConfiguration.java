@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2022 - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.tools.dev.configuration;
+
+import io.yupiik.batch.runtime.configuration.Binder;
+import io.yupiik.batch.runtime.configuration.Param;
+import io.yupiik.batch.runtime.configuration.Prefix;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+
+@Prefix("regex")
+@ApplicationScoped
+public class RegexConfiguration {
+    @Param(name = "regex-timeout", description = "Maximum duration (in milliseconds) of a regex evaluation, negative or zero to disable it.")
+    private long timeout = 2_000;
+
+    @Param(name = "regex-max-steps", description = "Maximum number of characters a regex evaluation can read (backtracking reads the same characters again), negative or zero to disable it.")
+    private long maxSteps = 100_000_000;
+
+    @PostConstruct
+    private void init() {
+        Binder.bindPrefixed(this);
+    }
+
+    public long getTimeout() {
+        return timeout;
+    }
+
+    public long getMaxSteps() {
+        return maxSteps;
+    }
+}
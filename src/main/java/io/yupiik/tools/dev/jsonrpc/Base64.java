@@ -16,13 +16,21 @@
 package io.yupiik.tools.dev.jsonrpc;
 
 import io.yupiik.tools.dev.api.UiMetadata;
+import io.yupiik.tools.dev.api.UiWidget;
+import io.yupiik.tools.dev.jsonrpc.internal.ByteStreams;
 import io.yupiik.uship.jsonrpc.core.api.JsonRpc;
 import io.yupiik.uship.jsonrpc.core.api.JsonRpcMethod;
 import io.yupiik.uship.jsonrpc.core.api.JsonRpcParam;
 import jakarta.enterprise.context.ApplicationScoped;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
+import static io.yupiik.tools.dev.api.UiWidget.TEXTAREA;
 import static java.util.Optional.ofNullable;
 
 @JsonRpc
@@ -32,31 +40,67 @@ public class Base64 {
     @JsonRpcMethod(name = "base64-encode", documentation = "Enables to encode a string in base64.")
     public String encode(@JsonRpcParam(documentation = "Base64 mode (URL, URL_NO_PADDING, DEFAULT)") final Base64EncodingMode mode,
                          @JsonRpcParam(documentation = "Value to encode", required = true) final String value) {
-        return switch (ofNullable(mode).orElse(Base64EncodingMode.DEFAULT)) {
-            case DEFAULT -> java.util.Base64.getEncoder().encodeToString(value.getBytes(StandardCharsets.UTF_8));
-            case URL -> java.util.Base64.getUrlEncoder().encodeToString(value.getBytes(StandardCharsets.UTF_8));
-            case URL_NO_PADDING ->
-                    java.util.Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
-            case MIME -> java.util.Base64.getMimeEncoder().encodeToString(value.getBytes(StandardCharsets.UTF_8));
-            case MIME_NO_PADDING ->
-                    java.util.Base64.getMimeEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
-        };
+        return ofNullable(mode).orElse(Base64EncodingMode.DEFAULT).encoder().encodeToString(value.getBytes(StandardCharsets.UTF_8));
     }
 
     @JsonRpcMethod(name = "base64-decode", documentation = "Enables to decode a base64 string.")
     public String decode(@JsonRpcParam(documentation = "Base64 mode (URL, URL_NO_PADDING, DEFAULT)") final Base64DecodingMode mode,
                          @JsonRpcParam(documentation = "Value to decode", required = true) final String value) {
-        return switch (ofNullable(mode).orElse(Base64DecodingMode.DEFAULT)) {
-            case DEFAULT -> new String(java.util.Base64.getDecoder().decode(value), StandardCharsets.UTF_8);
-            case URL -> new String(java.util.Base64.getUrlDecoder().decode(value), StandardCharsets.UTF_8);
-            case MIME -> new String(java.util.Base64.getMimeDecoder().decode(value), StandardCharsets.UTF_8);
-        };
+        return new String(ofNullable(mode).orElse(Base64DecodingMode.DEFAULT).decoder().decode(value), StandardCharsets.UTF_8);
+    }
+
+    @JsonRpcMethod(name = "base64-to-hex", documentation = "Converts a base64 value to hexadecimal (binary safe, no intermediate string).")
+    public String toHex(@JsonRpcParam(documentation = "Base64 mode (URL, MIME, DEFAULT)") final Base64DecodingMode mode,
+                        @JsonRpcParam(documentation = "Base64 value to convert", required = true) @UiWidget(TEXTAREA) final String value) {
+        final var out = new StringBuilder(value.length() * 3 / 2 + 2);
+        ByteStreams.copy(
+                ofNullable(mode).orElse(Base64DecodingMode.DEFAULT).decoder().wrap(ByteStreams.asciiInput(value)),
+                ByteStreams.hexEncoder(out));
+        return out.toString();
+    }
+
+    @JsonRpcMethod(name = "base64-encode-file", documentation = "Encodes a local file in base64 into another file, content is streamed so it can be huge.")
+    public FileConversion encodeFile(@JsonRpcParam(documentation = "Base64 mode (URL, URL_NO_PADDING, DEFAULT)") final Base64EncodingMode mode,
+                                     @JsonRpcParam(documentation = "Path of the file to encode", required = true) final String source,
+                                     @JsonRpcParam(documentation = "Path of the file to write the base64 value to", required = true) final String target) {
+        final var out = Path.of(target);
+        try (final var in = new BufferedInputStream(Files.newInputStream(Path.of(source)), ByteStreams.BUFFER_SIZE);
+             final var encoder = ofNullable(mode).orElse(Base64EncodingMode.DEFAULT).encoder()
+                     .wrap(new BufferedOutputStream(Files.newOutputStream(out), ByteStreams.BUFFER_SIZE))) {
+            in.transferTo(encoder);
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return FileConversion.of(out);
+    }
+
+    @JsonRpcMethod(name = "base64-decode-file", documentation = "Decodes a local base64 file into another file, content is streamed so it can be huge.")
+    public FileConversion decodeFile(@JsonRpcParam(documentation = "Base64 mode (URL, MIME, DEFAULT)") final Base64DecodingMode mode,
+                                     @JsonRpcParam(documentation = "Path of the base64 file to decode", required = true) final String source,
+                                     @JsonRpcParam(documentation = "Path of the file to write the decoded bytes to", required = true) final String target) {
+        final var out = Path.of(target);
+        try (final var decoder = ofNullable(mode).orElse(Base64DecodingMode.DEFAULT).decoder()
+                .wrap(new BufferedInputStream(Files.newInputStream(Path.of(source)), ByteStreams.BUFFER_SIZE));
+             final var output = new BufferedOutputStream(Files.newOutputStream(out), ByteStreams.BUFFER_SIZE)) {
+            decoder.transferTo(output);
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return FileConversion.of(out);
     }
 
     public enum Base64DecodingMode {
         MIME,
         URL,
-        DEFAULT
+        DEFAULT;
+
+        public java.util.Base64.Decoder decoder() {
+            return switch (this) {
+                case DEFAULT -> java.util.Base64.getDecoder();
+                case URL -> java.util.Base64.getUrlDecoder();
+                case MIME -> java.util.Base64.getMimeDecoder();
+            };
+        }
     }
 
     public enum Base64EncodingMode {
@@ -64,6 +108,16 @@ public class Base64 {
         MIME_NO_PADDING,
         URL,
         URL_NO_PADDING,
-        DEFAULT
+        DEFAULT;
+
+        public java.util.Base64.Encoder encoder() {
+            return switch (this) {
+                case DEFAULT -> java.util.Base64.getEncoder();
+                case URL -> java.util.Base64.getUrlEncoder();
+                case URL_NO_PADDING -> java.util.Base64.getUrlEncoder().withoutPadding();
+                case MIME -> java.util.Base64.getMimeEncoder();
+                case MIME_NO_PADDING -> java.util.Base64.getMimeEncoder().withoutPadding();
+            };
+        }
     }
 }
@@ -17,133 +17,419 @@ package io.yupiik.tools.dev.jsonrpc;
 
 import io.yupiik.tools.dev.api.UiMetadata;
 import io.yupiik.tools.dev.api.UiWidget;
+import io.yupiik.tools.dev.jsonrpc.internal.ByteStreams;
+import io.yupiik.tools.dev.jsonrpc.internal.CkSum;
+import io.yupiik.tools.dev.jsonrpc.internal.CryptoEngines;
+import io.yupiik.tools.dev.jsonrpc.internal.UnixSum;
 import io.yupiik.uship.jsonrpc.core.api.JsonRpc;
 import io.yupiik.uship.jsonrpc.core.api.JsonRpcMethod;
 import io.yupiik.uship.jsonrpc.core.api.JsonRpcParam;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
 import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+import java.util.zip.CRC32C;
+import java.util.zip.Checksum;
 
 import static io.yupiik.tools.dev.api.UiWidget.TEXTAREA;
-import static java.util.stream.Collectors.joining;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.util.Optional.ofNullable;
+import static java.util.function.Function.identity;
+import static java.util.stream.Collectors.toMap;
 
 @JsonRpc
 @ApplicationScoped
 @UiMetadata(rootLabel = "Generator", commandPrefix = "digest-")
 public class Digest {
-    private static final int[] CRC_TAB = {
-            0x00000000,
-            0x04C11DB7, 0x09823B6E, 0x0D4326D9, 0x130476DC, 0x17C56B6B,
-            0x1A864DB2, 0x1E475005, 0x2608EDB8, 0x22C9F00F, 0x2F8AD6D6,
-            0x2B4BCB61, 0x350C9B64, 0x31CD86D3, 0x3C8EA00A, 0x384FBDBD,
-            0x4C11DB70, 0x48D0C6C7, 0x4593E01E, 0x4152FDA9, 0x5F15ADAC,
-            0x5BD4B01B, 0x569796C2, 0x52568B75, 0x6A1936C8, 0x6ED82B7F,
-            0x639B0DA6, 0x675A1011, 0x791D4014, 0x7DDC5DA3, 0x709F7B7A,
-            0x745E66CD, 0x9823B6E0, 0x9CE2AB57, 0x91A18D8E, 0x95609039,
-            0x8B27C03C, 0x8FE6DD8B, 0x82A5FB52, 0x8664E6E5, 0xBE2B5B58,
-            0xBAEA46EF, 0xB7A96036, 0xB3687D81, 0xAD2F2D84, 0xA9EE3033,
-            0xA4AD16EA, 0xA06C0B5D, 0xD4326D90, 0xD0F37027, 0xDDB056FE,
-            0xD9714B49, 0xC7361B4C, 0xC3F706FB, 0xCEB42022, 0xCA753D95,
-            0xF23A8028, 0xF6FB9D9F, 0xFBB8BB46, 0xFF79A6F1, 0xE13EF6F4,
-            0xE5FFEB43, 0xE8BCCD9A, 0xEC7DD02D, 0x34867077, 0x30476DC0,
-            0x3D044B19, 0x39C556AE, 0x278206AB, 0x23431B1C, 0x2E003DC5,
-            0x2AC12072, 0x128E9DCF, 0x164F8078, 0x1B0CA6A1, 0x1FCDBB16,
-            0x018AEB13, 0x054BF6A4, 0x0808D07D, 0x0CC9CDCA, 0x7897AB07,
-            0x7C56B6B0, 0x71159069, 0x75D48DDE, 0x6B93DDDB, 0x6F52C06C,
-            0x6211E6B5, 0x66D0FB02, 0x5E9F46BF, 0x5A5E5B08, 0x571D7DD1,
-            0x53DC6066, 0x4D9B3063, 0x495A2DD4, 0x44190B0D, 0x40D816BA,
-            0xACA5C697, 0xA864DB20, 0xA527FDF9, 0xA1E6E04E, 0xBFA1B04B,
-            0xBB60ADFC, 0xB6238B25, 0xB2E29692, 0x8AAD2B2F, 0x8E6C3698,
-            0x832F1041, 0x87EE0DF6, 0x99A95DF3, 0x9D684044, 0x902B669D,
-            0x94EA7B2A, 0xE0B41DE7, 0xE4750050, 0xE9362689, 0xEDF73B3E,
-            0xF3B06B3B, 0xF771768C, 0xFA325055, 0xFEF34DE2, 0xC6BCF05F,
-            0xC27DEDE8, 0xCF3ECB31, 0xCBFFD686, 0xD5B88683, 0xD1799B34,
-            0xDC3ABDED, 0xD8FBA05A, 0x690CE0EE, 0x6DCDFD59, 0x608EDB80,
-            0x644FC637, 0x7A089632, 0x7EC98B85, 0x738AAD5C, 0x774BB0EB,
-            0x4F040D56, 0x4BC510E1, 0x46863638, 0x42472B8F, 0x5C007B8A,
-            0x58C1663D, 0x558240E4, 0x51435D53, 0x251D3B9E, 0x21DC2629,
-            0x2C9F00F0, 0x285E1D47, 0x36194D42, 0x32D850F5, 0x3F9B762C,
-            0x3B5A6B9B, 0x0315D626, 0x07D4CB91, 0x0A97ED48, 0x0E56F0FF,
-            0x1011A0FA, 0x14D0BD4D, 0x19939B94, 0x1D528623, 0xF12F560E,
-            0xF5EE4BB9, 0xF8AD6D60, 0xFC6C70D7, 0xE22B20D2, 0xE6EA3D65,
-            0xEBA91BBC, 0xEF68060B, 0xD727BBB6, 0xD3E6A601, 0xDEA580D8,
-            0xDA649D6F, 0xC423CD6A, 0xC0E2D0DD, 0xCDA1F604, 0xC960EBB3,
-            0xBD3E8D7E, 0xB9FF90C9, 0xB4BCB610, 0xB07DABA7, 0xAE3AFBA2,
-            0xAAFBE615, 0xA7B8C0CC, 0xA379DD7B, 0x9B3660C6, 0x9FF77D71,
-            0x92B45BA8, 0x9675461F, 0x8832161A, 0x8CF30BAD, 0x81B02D74,
-            0x857130C3, 0x5D8A9099, 0x594B8D2E, 0x5408ABF7, 0x50C9B640,
-            0x4E8EE645, 0x4A4FFBF2, 0x470CDD2B, 0x43CDC09C, 0x7B827D21,
-            0x7F436096, 0x7200464F, 0x76C15BF8, 0x68860BFD, 0x6C47164A,
-            0x61043093, 0x65C52D24, 0x119B4BE9, 0x155A565E, 0x18197087,
-            0x1CD86D30, 0x029F3D35, 0x065E2082, 0x0B1D065B, 0x0FDC1BEC,
-            0x3793A651, 0x3352BBE6, 0x3E119D3F, 0x3AD08088, 0x2497D08D,
-            0x2056CD3A, 0x2D15EBE3, 0x29D4F654, 0xC5A92679, 0xC1683BCE,
-            0xCC2B1D17, 0xC8EA00A0, 0xD6AD50A5, 0xD26C4D12, 0xDF2F6BCB,
-            0xDBEE767C, 0xE3A1CBC1, 0xE760D676, 0xEA23F0AF, 0xEEE2ED18,
-            0xF0A5BD1D, 0xF464A0AA, 0xF9278673, 0xFDE69BC4, 0x89B8FD09,
-            0x8D79E0BE, 0x803AC667, 0x84FBDBD0, 0x9ABC8BD5, 0x9E7D9662,
-            0x933EB0BB, 0x97FFAD0C, 0xAFB010B1, 0xAB710D06, 0xA6322BDF,
-            0xA2F33668, 0xBCB4666D, 0xB8757BDA, 0xB5365D03, 0xB1F740B4
-    };
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int PARALLEL_BUFFER_SIZE = 1024 * 1024; // bigger chunks to amortize the fork/join per chunk
+    private static final int TREE_CHUNK_SIZE = 1024 * 1024;
+    private static final int BATCH_SLICE_SIZE = 256;
+
+    @Inject
+    private CryptoEngines engines;
 
     @JsonRpcMethod(name = "digest-md5", documentation = "Compute MD5 of the content.")
     public String hashMD5(@JsonRpcParam(documentation = "Value to compute the MD5 of.") @UiWidget(TEXTAREA) final String text) {
-        return hash(text, "MD5");
+        return hash(text, Algorithm.MD5);
     }
 
     @JsonRpcMethod(name = "digest-sha1", documentation = "Compute SHA-1 of the content.")
     public String hashSHA1(@JsonRpcParam(documentation = "Value to compute the SHA-1 of.") @UiWidget(TEXTAREA) final String text) {
-        return hash(text, "SHA-1");
+        return hash(text, Algorithm.SHA1);
     }
 
     @JsonRpcMethod(name = "digest-sha256", documentation = "Compute SHA-256 of the content.")
     public String hashSHA256(@JsonRpcParam(documentation = "Value to compute the SHA-256 of.") @UiWidget(TEXTAREA) final String text) {
-        return hash(text, "SHA-256");
+        return hash(text, Algorithm.SHA256);
     }
 
     @JsonRpcMethod(name = "digest-sha512", documentation = "Compute SHA-512 of the content.")
     public String hashSHA512(@JsonRpcParam(documentation = "Value to compute the SHA-512 of.") @UiWidget(TEXTAREA) final String text) {
-        return hash(text, "SHA-512");
+        return hash(text, Algorithm.SHA512);
     }
 
     @JsonRpcMethod(name = "digest-unix-sum", documentation = "Compute unix sum of the content.")
     public String hashUnixSum(@JsonRpcParam(documentation = "Value to compute the unix sum of.") @UiWidget(TEXTAREA) final String text) {
-        long value = 0;
-        for (final byte b : text.getBytes(StandardCharsets.UTF_8)) {
-            value = (value >> 1) + ((value & 1) << 15);
-            value += (b & 0xff);
-            value &= 0xffff;
-        }
-        final var str = Long.toString(value);
-        return str.length() >= 5 ? str : IntStream.range(0, 5 - str.length()).mapToObj(i -> "0").collect(joining()) + str;
+        return hash(text, Algorithm.UNIX_SUM);
     }
 
     @JsonRpcMethod(name = "digest-ck-sum", documentation = "Compute ck sum of the content.")
     public String hashCkSum(@JsonRpcParam(documentation = "Value to compute the ck sum of.") @UiWidget(TEXTAREA) final String text) {
-        final var input = text.getBytes(StandardCharsets.UTF_8);
-        int value = 0;
-        for (final byte b : input) {
-            value = (value << 8) ^ CRC_TAB[((value >> 24) ^ b) & 0xff];
+        return hash(text, Algorithm.CK_SUM);
+    }
+
+    @JsonRpcMethod(name = "digest-crc32", documentation = "Compute CRC32 (zip/PNG/ethernet one) of the content.")
+    public String hashCrc32(@JsonRpcParam(documentation = "Value to compute the CRC32 of.") @UiWidget(TEXTAREA) final String text) {
+        return hash(text, Algorithm.CRC32);
+    }
+
+    @JsonRpcMethod(name = "digest-crc32c", documentation = "Compute CRC32C (Castagnoli) of the content.")
+    public String hashCrc32c(@JsonRpcParam(documentation = "Value to compute the CRC32C of.") @UiWidget(TEXTAREA) final String text) {
+        return hash(text, Algorithm.CRC32C);
+    }
+
+    @JsonRpcMethod(name = "digest-md5-file", documentation = "Compute MD5 of a local file, the file is streamed so it can be huge.")
+    public String hashMD5File(@JsonRpcParam(documentation = "Path of the file to compute the MD5 of.", required = true) final String path) {
+        return hashFile(path, Algorithm.MD5);
+    }
+
+    @JsonRpcMethod(name = "digest-sha1-file", documentation = "Compute SHA-1 of a local file, the file is streamed so it can be huge.")
+    public String hashSHA1File(@JsonRpcParam(documentation = "Path of the file to compute the SHA-1 of.", required = true) final String path) {
+        return hashFile(path, Algorithm.SHA1);
+    }
+
+    @JsonRpcMethod(name = "digest-sha256-file", documentation = "Compute SHA-256 of a local file, the file is streamed so it can be huge.")
+    public String hashSHA256File(@JsonRpcParam(documentation = "Path of the file to compute the SHA-256 of.", required = true) final String path) {
+        return hashFile(path, Algorithm.SHA256);
+    }
+
+    @JsonRpcMethod(name = "digest-sha512-file", documentation = "Compute SHA-512 of a local file, the file is streamed so it can be huge.")
+    public String hashSHA512File(@JsonRpcParam(documentation = "Path of the file to compute the SHA-512 of.", required = true) final String path) {
+        return hashFile(path, Algorithm.SHA512);
+    }
+
+    @JsonRpcMethod(name = "digest-unix-sum-file", documentation = "Compute unix sum of a local file, the file is streamed so it can be huge.")
+    public String hashUnixSumFile(@JsonRpcParam(documentation = "Path of the file to compute the unix sum of.", required = true) final String path) {
+        return hashFile(path, Algorithm.UNIX_SUM);
+    }
+
+    @JsonRpcMethod(name = "digest-ck-sum-file", documentation = "Compute ck sum of a local file, the file is streamed so it can be huge.")
+    public String hashCkSumFile(@JsonRpcParam(documentation = "Path of the file to compute the ck sum of.", required = true) final String path) {
+        return hashFile(path, Algorithm.CK_SUM);
+    }
+
+    @JsonRpcMethod(name = "digest-crc32-file", documentation = "Compute CRC32 of a local file, the file is streamed so it can be huge.")
+    public String hashCrc32File(@JsonRpcParam(documentation = "Path of the file to compute the CRC32 of.", required = true) final String path) {
+        return hashFile(path, Algorithm.CRC32);
+    }
+
+    @JsonRpcMethod(name = "digest-crc32c-file", documentation = "Compute CRC32C of a local file, the file is streamed so it can be huge.")
+    public String hashCrc32cFile(@JsonRpcParam(documentation = "Path of the file to compute the CRC32C of.", required = true) final String path) {
+        return hashFile(path, Algorithm.CRC32C);
+    }
+
+    @JsonRpcMethod(name = "digest-all", documentation = "Compute several digests of the same content (text or local file) reading it only once.")
+    public Map<String, String> hashAll(@JsonRpcParam(documentation = "Algorithms to compute, all if not set.") final List<Algorithm> algorithms,
+                                       @JsonRpcParam(documentation = "Value to compute the digests of.") @UiWidget(TEXTAREA) final String text,
+                                       @JsonRpcParam(documentation = "Path of a local file to compute the digests of, ignored if text is set.") final String path,
+                                       @JsonRpcParam(documentation = "If true, algorithms are computed concurrently on each chunk (faster for big inputs).") final Boolean parallel) {
+        final var hashers = (algorithms == null || algorithms.isEmpty() ? List.of(Algorithm.values()) : algorithms).stream()
+                .distinct()
+                .collect(toMap(identity(), this::hasher, (a, b) -> a, LinkedHashMap::new));
+        final var concurrent = Boolean.TRUE.equals(parallel) && hashers.size() > 1;
+        final Consumer<ByteBuffer> onChunk = concurrent ?
+                // each hasher gets its own view of the chunk, the stream only returns once all algorithms consumed it
+                buffer -> hashers.values().parallelStream().forEach(h -> h.update(buffer.duplicate())) :
+                buffer -> hashers.values().forEach(h -> h.update(buffer.duplicate()));
+        if (text != null) {
+            onChunk.accept(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));
+        } else if (path != null) {
+            read(path, concurrent ? PARALLEL_BUFFER_SIZE : BUFFER_SIZE, onChunk);
+        } else {
+            throw new IllegalArgumentException("No text nor path set");
+        }
+        return hashers.entrySet().stream()
+                .collect(toMap(e -> e.getKey().name(), e -> e.getValue().result(), (a, b) -> a, LinkedHashMap::new));
+    }
+
+    @JsonRpcMethod(name = "digest-base64", documentation = "Compute the digest of base64 encoded bytes (binary safe, bytes are streamed while decoded).")
+    public String hashBase64(@JsonRpcParam(documentation = "Algorithm to use.", required = true) final Algorithm algorithm,
+                             @JsonRpcParam(documentation = "Base64 mode (URL, MIME, DEFAULT)") final io.yupiik.tools.dev.jsonrpc.Base64.Base64DecodingMode mode,
+                             @JsonRpcParam(documentation = "Base64 value to decode and compute the digest of.", required = true) @UiWidget(TEXTAREA) final String value) {
+        final var hasher = hasher(algorithm);
+        ByteStreams.pump(
+                ofNullable(mode).orElse(io.yupiik.tools.dev.jsonrpc.Base64.Base64DecodingMode.DEFAULT).decoder().wrap(ByteStreams.asciiInput(value)),
+                hasher::update);
+        return hasher.result();
+    }
+
+    @JsonRpcMethod(name = "digest-hex", documentation = "Compute the digest of hexadecimal encoded bytes (binary safe, bytes are streamed while decoded).")
+    public String hashHex(@JsonRpcParam(documentation = "Algorithm to use.", required = true) final Algorithm algorithm,
+                          @JsonRpcParam(documentation = "Hexadecimal value to decode and compute the digest of.", required = true) @UiWidget(TEXTAREA) final String value) {
+        final var hasher = hasher(algorithm);
+        ByteStreams.pump(ByteStreams.hexDecoder(value), hasher::update);
+        return hasher.result();
+    }
+
+    @JsonRpcMethod(name = "digest-batch", documentation = "Compute the digest of each value of a list, results are in the same order than the values.")
+    public List<String> hashBatch(@JsonRpcParam(documentation = "Algorithm to use.", required = true) final Algorithm algorithm,
+                                  @JsonRpcParam(documentation = "Values to compute the digest of.", required = true) final List<String> values) {
+        if (values.size() <= BATCH_SLICE_SIZE) {
+            return hashSlice(algorithm, values);
+        }
+        // slices are processed on the common pool so concurrency is bounded by its parallelism
+        final int sliceSize = Math.max(BATCH_SLICE_SIZE, values.size() / (ForkJoinPool.getCommonPoolParallelism() * 4));
+        return IntStream.range(0, (values.size() + sliceSize - 1) / sliceSize)
+                .parallel()
+                .mapToObj(i -> hashSlice(algorithm, values.subList(i * sliceSize, Math.min(values.size(), (i + 1) * sliceSize))))
+                .flatMap(List::stream)
+                .toList();
+    }
+
+    @JsonRpcMethod(name = "digest-tree", documentation = "" +
+            "Compute a Merkle tree hash of the content (text or local file): chunks are hashed in parallel " +
+            "then combined pairwise up to the root (leaf=H(0x00|chunk), node=H(0x01|left|right)).")
+    public TreeDigest hashTree(@JsonRpcParam(documentation = "Algorithm to use (cryptographic ones only), SHA256 by default.") final Algorithm algorithm,
+                               @JsonRpcParam(documentation = "Value to compute the tree hash of.") @UiWidget(TEXTAREA) final String text,
+                               @JsonRpcParam(documentation = "Path of a local file to compute the tree hash of, ignored if text is set.") final String path,
+                               @JsonRpcParam(documentation = "Chunk size in bytes, 1MiB by default.") final Integer chunkSize,
+                               @JsonRpcParam(documentation = "If true the chunk (leaf) hashes are returned too.") final Boolean includeChunks) {
+        final var algo = algorithm == null ? Algorithm.SHA256 : algorithm;
+        if (algo.jvmName == null) {
+            throw new IllegalArgumentException("Tree hash only supports cryptographic algorithms, got " + algo);
+        }
+        final int chunk = chunkSize == null ? TREE_CHUNK_SIZE : chunkSize;
+        if (chunk <= 0) {
+            throw new IllegalArgumentException("Invalid chunk size: " + chunk);
+        }
+
+        final List<byte[]> leaves;
+        final long size;
+        if (text != null) {
+            final var bytes = text.getBytes(StandardCharsets.UTF_8);
+            size = bytes.length;
+            leaves = IntStream.range(0, chunkCount(size, chunk))
+                    .parallel()
+                    .mapToObj(i -> leaf(algo, ByteBuffer.wrap(bytes, i * chunk, Math.min(chunk, bytes.length - i * chunk))))
+                    .toList();
+        } else if (path != null) {
+            try (final var channel = FileChannel.open(Path.of(path), READ)) {
+                size = channel.size();
+                final int count = chunkCount(size, chunk);
+                final int sliceSize = Math.max(1, count / (ForkJoinPool.getCommonPoolParallelism() * 4));
+                leaves = IntStream.range(0, (count + sliceSize - 1) / sliceSize)
+                        .parallel()
+                        .mapToObj(i -> fileLeaves(algo, channel, size, chunk, i * sliceSize, Math.min(count, (i + 1) * sliceSize)))
+                        .flatMap(List::stream)
+                        .toList();
+            } catch (final IOException e) {
+                throw new IllegalStateException(e);
+            }
+        } else {
+            throw new IllegalArgumentException("No text nor path set");
+        }
+
+        var level = leaves;
+        while (level.size() > 1) {
+            final var current = level;
+            level = IntStream.range(0, (current.size() + 1) / 2)
+                    .mapToObj(i -> 2 * i + 1 < current.size() ?
+                            node(algo, current.get(2 * i), current.get(2 * i + 1)) :
+                            current.get(2 * i)) // odd node is promoted as is
+                    .toList();
+        }
+
+        final var encoder = Base64.getEncoder();
+        return new TreeDigest(
+                algo, encoder.encodeToString(level.get(0)), chunk, size,
+                Boolean.TRUE.equals(includeChunks) ? leaves.stream().map(encoder::encodeToString).toList() : null);
+    }
+
+    // a single engine is borrowed per slice
+    private List<String> hashSlice(final Algorithm algorithm, final List<String> values) {
+        if (algorithm.jvmName == null) { // checksums are plain cheap objects
+            return values.stream().map(it -> it == null ? null : hash(it, algorithm)).toList();
+        }
+        try (final var pooled = engines.messageDigest(algorithm.jvmName)) {
+            final var digest = pooled.get();
+            final var encoder = Base64.getEncoder();
+            return values.stream()
+                    .map(it -> it == null ? null : encoder.encodeToString(digest.digest(it.getBytes(StandardCharsets.UTF_8))))
+                    .toList();
         }
-        int len = input.length;
-        while (len > 0) {
-            value = (value << 8) ^ CRC_TAB[((value >> 24) ^ len) & 0xff];
-            len >>= 8;
+    }
+
+    private int chunkCount(final long size, final int chunk) {
+        final long count = Math.max(1, (size + chunk - 1) / chunk);
+        if (count > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Chunk size too small for " + size + " bytes");
+        }
+        return (int) count;
+    }
+
+    private byte[] leaf(final Algorithm algorithm, final ByteBuffer chunk) {
+        try (final var pooled = engines.messageDigest(algorithm.jvmName)) {
+            final var digest = pooled.get();
+            digest.update((byte) 0);
+            digest.update(chunk);
+            return digest.digest();
         }
-        final long result = ~value & 0xffffffffL;
-        final var str = Long.toString(result);
-        return str.length() >= 5 ? str : IntStream.range(0, 5 - str.length()).mapToObj(i -> "0").collect(joining()) + str;
     }
 
-    private String hash(final String text, final String algo) {
-        try {
-            return Base64.getEncoder().encodeToString(MessageDigest.getInstance(algo).digest(text.getBytes(StandardCharsets.UTF_8)));
-        } catch (final NoSuchAlgorithmException e) {
+    // a single engine and read buffer are used per slice, positional reads keep the chunks independent of the channel position
+    private List<byte[]> fileLeaves(final Algorithm algorithm, final FileChannel channel, final long size, final int chunk,
+                                    final int from, final int to) {
+        final var buffer = ByteBuffer.allocate(Math.min(BUFFER_SIZE, chunk));
+        try (final var pooled = engines.messageDigest(algorithm.jvmName)) {
+            final var digest = pooled.get();
+            final var leaves = new ArrayList<byte[]>(to - from);
+            for (int i = from; i < to; i++) {
+                long position = (long) i * chunk;
+                final long end = Math.min(size, position + chunk);
+                digest.update((byte) 0);
+                while (position < end) {
+                    buffer.clear().limit((int) Math.min(buffer.capacity(), end - position));
+                    final int read = channel.read(buffer, position);
+                    if (read < 0) {
+                        throw new IllegalStateException("Unexpected end of file at " + position);
+                    }
+                    position += read;
+                    digest.update(buffer.flip());
+                }
+                leaves.add(digest.digest());
+            }
+            return leaves;
+        } catch (final IOException e) {
             throw new IllegalStateException(e);
         }
     }
+
+    private byte[] node(final Algorithm algorithm, final byte[] left, final byte[] right) {
+        try (final var pooled = engines.messageDigest(algorithm.jvmName)) {
+            final var digest = pooled.get();
+            digest.update((byte) 1);
+            digest.update(left);
+            return digest.digest(right);
+        }
+    }
+
+    private String hash(final String text, final Algorithm algorithm) {
+        final var hasher = hasher(algorithm);
+        hasher.update(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));
+        return hasher.result();
+    }
+
+    private String hashFile(final String path, final Algorithm algorithm) {
+        final var hasher = hasher(algorithm);
+        read(path, BUFFER_SIZE, hasher::update);
+        return hasher.result();
+    }
+
+    // reads the file chunk by chunk with a fixed buffer so memory stays flat whatever the file size is
+    private void read(final String path, final int bufferSize, final Consumer<ByteBuffer> consumer) {
+        try (final var channel = FileChannel.open(Path.of(path), READ)) {
+            final var buffer = ByteBuffer.allocate(bufferSize);
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                consumer.accept(buffer);
+                buffer.clear();
+            }
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Hasher hasher(final Algorithm algorithm) {
+        return hasher(engines, algorithm);
+    }
+
+    static Hasher hasher(final CryptoEngines engines, final Algorithm algorithm) {
+        return switch (algorithm) {
+            case UNIX_SUM -> new ChecksumHasher(new UnixSum(), Digest::decimal);
+            case CK_SUM -> new ChecksumHasher(new CkSum(), Digest::decimal);
+            // java.util.zip implementations are JVM intrinsics (CPU CRC instructions when available)
+            case CRC32 -> new ChecksumHasher(new CRC32(), Digest::hex);
+            case CRC32C -> new ChecksumHasher(new CRC32C(), Digest::hex);
+            default -> new MessageDigestHasher(engines.messageDigest(algorithm.jvmName));
+        };
+    }
+
+    public enum Algorithm {
+        MD5("MD5"),
+        SHA1("SHA-1"),
+        SHA256("SHA-256"),
+        SHA512("SHA-512"),
+        UNIX_SUM(null),
+        CK_SUM(null),
+        CRC32(null),
+        CRC32C(null);
+
+        private final String jvmName;
+
+        Algorithm(final String jvmName) {
+            this.jvmName = jvmName;
+        }
+    }
+
+    public record TreeDigest(Algorithm algorithm, String root, int chunkSize, long size, List<String> chunks) {
+    }
+
+    interface Hasher {
+        void update(ByteBuffer buffer);
+
+        String result();
+    }
+
+    // the engine goes back to the pool once the result is computed
+    private record MessageDigestHasher(CryptoEngines.Pooled<MessageDigest> digest) implements Hasher {
+        @Override
+        public void update(final ByteBuffer buffer) {
+            digest.get().update(buffer);
+        }
+
+        @Override
+        public String result() {
+            try (digest) {
+                return Base64.getEncoder().encodeToString(digest.get().digest());
+            }
+        }
+    }
+
+    private static String decimal(final long value) {
+        final var str = Long.toString(value);
+        return str.length() >= 5 ? str : "0".repeat(5 - str.length()) + str;
+    }
+
+    private static String hex(final long value) {
+        final var str = Long.toHexString(value);
+        return str.length() >= 8 ? str : "0".repeat(8 - str.length()) + str;
+    }
+
+    private record ChecksumHasher(Checksum checksum, LongFunction<String> formatter) implements Hasher {
+        @Override
+        public void update(final ByteBuffer buffer) {
+            checksum.update(buffer);
+        }
+
+        @Override
+        public String result() {
+            return formatter.apply(checksum.getValue());
+        }
+    }
 }
@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2022 - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.tools.dev.jsonrpc;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Result of the tools writing to a local file.
+ *
+ * @param target absolute path of the written file.
+ * @param size   size in bytes of the written file.
+ */
+public record FileConversion(String target, long size) {
+    public static FileConversion of(final Path target) {
+        try {
+            return new FileConversion(target.toAbsolutePath().toString(), Files.size(target));
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
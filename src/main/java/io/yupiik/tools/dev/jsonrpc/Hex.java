@@ -16,25 +16,69 @@
 package io.yupiik.tools.dev.jsonrpc;
 
 import io.yupiik.tools.dev.api.UiMetadata;
+import io.yupiik.tools.dev.api.UiWidget;
+import io.yupiik.tools.dev.jsonrpc.internal.ByteStreams;
+import io.yupiik.tools.dev.jsonrpc.internal.HexCodec;
 import io.yupiik.uship.jsonrpc.core.api.JsonRpc;
 import io.yupiik.uship.jsonrpc.core.api.JsonRpcMethod;
 import io.yupiik.uship.jsonrpc.core.api.JsonRpcParam;
 import jakarta.enterprise.context.ApplicationScoped;
 
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
-import java.util.HexFormat;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static io.yupiik.tools.dev.api.UiWidget.TEXTAREA;
+import static java.util.Optional.ofNullable;
 
 @JsonRpc
 @ApplicationScoped
 @UiMetadata(rootLabel = "Encoding", commandPrefix = "hex-")
 public class Hex {
-    @JsonRpcMethod(name = "hex-encode", documentation = "Enables to encode a string in base64.")
+    @JsonRpcMethod(name = "hex-encode", documentation = "Enables to encode a string in hexadecimal.")
     public String encode(@JsonRpcParam(documentation = "Value to encode", required = true) final String value) {
-        return HexFormat.of().formatHex(value.getBytes(StandardCharsets.UTF_8));
+        return HexCodec.encode(value.getBytes(StandardCharsets.UTF_8));
     }
 
-    @JsonRpcMethod(name = "hex-decode", documentation = "Enables to decode a base64 string.")
+    @JsonRpcMethod(name = "hex-decode", documentation = "Enables to decode an hexadecimal string.")
     public String decode(@JsonRpcParam(documentation = "Value to decode", required = true) final String value) {
-        return new String(HexFormat.of().parseHex(value));
+        return new String(HexCodec.decode(value), StandardCharsets.UTF_8);
+    }
+
+    @JsonRpcMethod(name = "hex-to-base64", documentation = "Converts an hexadecimal value to base64 (binary safe, no intermediate string).")
+    public String toBase64(@JsonRpcParam(documentation = "Base64 mode (URL, URL_NO_PADDING, DEFAULT)") final Base64.Base64EncodingMode mode,
+                           @JsonRpcParam(documentation = "Hexadecimal value to convert", required = true) @UiWidget(TEXTAREA) final String value) {
+        final var out = new StringBuilder(value.length() * 2 / 3 + 4);
+        ByteStreams.copy(
+                ByteStreams.hexDecoder(value),
+                ofNullable(mode).orElse(Base64.Base64EncodingMode.DEFAULT).encoder().wrap(ByteStreams.asciiOutput(out)));
+        return out.toString();
+    }
+
+    @JsonRpcMethod(name = "hex-encode-file", documentation = "Encodes a local file in hexadecimal into another file, content is streamed so it can be huge.")
+    public FileConversion encodeFile(@JsonRpcParam(documentation = "Path of the file to encode", required = true) final String source,
+                                     @JsonRpcParam(documentation = "Path of the file to write the hexadecimal value to", required = true) final String target) {
+        final var out = Path.of(target);
+        try (final var in = Files.newInputStream(Path.of(source));
+             final var output = Files.newOutputStream(out)) { // the input is closed if the output can't be opened
+            ByteStreams.hexEncode(in, output);
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return FileConversion.of(out);
+    }
+
+    @JsonRpcMethod(name = "hex-decode-file", documentation = "Decodes a local hexadecimal file (whitespaces are ignored) into another file, content is streamed so it can be huge.")
+    public FileConversion decodeFile(@JsonRpcParam(documentation = "Path of the hexadecimal file to decode", required = true) final String source,
+                                     @JsonRpcParam(documentation = "Path of the file to write the decoded bytes to", required = true) final String target) {
+        final var out = Path.of(target);
+        try (final var in = Files.newInputStream(Path.of(source));
+             final var output = Files.newOutputStream(out)) {
+            ByteStreams.hexDecode(in, output);
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return FileConversion.of(out);
     }
 }
@@ -17,13 +17,14 @@ package io.yupiik.tools.dev.jsonrpc;
 
 import io.yupiik.tools.dev.api.UiMetadata;
 import io.yupiik.tools.dev.api.UiWidget;
+import io.yupiik.tools.dev.jsonrpc.internal.CryptoEngines;
 import io.yupiik.uship.jsonrpc.core.api.JsonRpc;
 import io.yupiik.uship.jsonrpc.core.api.JsonRpcMethod;
 import io.yupiik.uship.jsonrpc.core.api.JsonRpcParam;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
 import org.tomitribe.churchkey.pem.PemParser;
 
-import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
 import java.io.IOException;
 import java.io.StringReader;
@@ -33,7 +34,6 @@ import java.nio.charset.StandardCharsets;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.security.Signature;
@@ -55,6 +55,9 @@ import static java.util.stream.Collectors.joining;
 public class HttpSignature {
     private final PemParser pemParser = new PemParser();
 
+    @Inject
+    private CryptoEngines engines;
+
     @JsonRpcMethod(name = "http-signature-sign", documentation = "Compute the HTTP Signature of the provided request.")
     public String sign(@JsonRpcParam(value = "requestMethod", documentation = "Request method.", required = true) final HttpMethod method,
                        @JsonRpcParam(value = "requestUri", documentation = "Request uri.", required = true) final String uri,
@@ -85,10 +88,10 @@ public class HttpSignature {
         final var signingString = createSigningString(headers, method.name(), uri, headerValues).getBytes(StandardCharsets.UTF_8);
         if (algo.httpSignatureName.startsWith("hmac")) {
             try {
-                final var mac = Mac.getInstance(algo.jvmName);
+                final var mac = engines.mac(algo.jvmName);
                 mac.init(new SecretKeySpec(rawKey.getBytes(StandardCharsets.UTF_8), algo.jvmName));
                 return MessageDigest.isEqual(mac.doFinal(signingString), java.util.Base64.getDecoder().decode(findSignature(expected)));
-            } catch (final NoSuchAlgorithmException | InvalidKeyException e) {
+            } catch (final InvalidKeyException e) {
                 throw new IllegalStateException(e);
             }
         }
@@ -97,7 +100,7 @@ public class HttpSignature {
             signature.initVerify((PublicKey) pemParser.decode(rawKey.getBytes(StandardCharsets.UTF_8)));
             signature.update(signingString);
             return signature.verify(java.util.Base64.getDecoder().decode(expected));
-        } catch (final NoSuchAlgorithmException | InvalidKeyException | SignatureException e) {
+        } catch (final InvalidKeyException | SignatureException e) {
             throw new IllegalStateException(e);
         }
     }
@@ -113,8 +116,8 @@ public class HttpSignature {
         return in;
     }
 
-    private static Signature getSignature(final String algo, final String jvmAlgo) throws NoSuchAlgorithmException {
-        final var signature = Signature.getInstance(jvmAlgo);
+    private Signature getSignature(final String algo, final String jvmAlgo) {
+        final var signature = engines.signature(jvmAlgo);
         if (jvmAlgo.startsWith("RSASSA")) {
             try {
                 switch (algo) {
@@ -139,19 +142,19 @@ public class HttpSignature {
         final var signingString = createSigningString(headers, method.name(), uri, headerValues).getBytes(StandardCharsets.UTF_8);
         if (algo.httpSignatureName.startsWith("hmac")) {
             try {
-                final var mac = Mac.getInstance(algo.jvmName);
+                final var mac = engines.mac(algo.jvmName);
                 mac.init(new SecretKeySpec(rawKey.getBytes(StandardCharsets.UTF_8), algo.jvmName));
                 return java.util.Base64.getEncoder().encodeToString(mac.doFinal(signingString));
-            } catch (final NoSuchAlgorithmException | InvalidKeyException e) {
+            } catch (final InvalidKeyException e) {
                 throw new IllegalStateException(e);
             }
         }
         try {
-            final var signature = Signature.getInstance(algo.jvmName);
+            final var signature = getSignature(algo.httpSignatureName, algo.jvmName);
             signature.initSign((PrivateKey) pemParser.decode(rawKey.getBytes(StandardCharsets.UTF_8)));
             signature.update(signingString);
             return Base64.getEncoder().encodeToString(signature.sign());
-        } catch (final NoSuchAlgorithmException | InvalidKeyException | SignatureException e) {
+        } catch (final InvalidKeyException | SignatureException e) {
             throw new IllegalStateException(e);
         }
     }
@@ -17,21 +17,44 @@ package io.yupiik.tools.dev.jsonrpc;
 
 import io.yupiik.tools.dev.api.UiMetadata;
 import io.yupiik.tools.dev.api.UiWidget;
+import io.yupiik.tools.dev.configuration.RegexConfiguration;
+import io.yupiik.tools.dev.jsonrpc.internal.ByteStreams;
+import io.yupiik.tools.dev.jsonrpc.internal.CryptoEngines;
+import io.yupiik.tools.dev.jsonrpc.internal.JsonCanonicalizer;
+import io.yupiik.tools.dev.jsonrpc.internal.JsonDiff;
+import io.yupiik.tools.dev.jsonrpc.internal.JsonSchema;
+import io.yupiik.tools.dev.jsonrpc.internal.JsonStreams;
+import io.yupiik.tools.dev.jsonrpc.internal.LruCache;
+import io.yupiik.tools.dev.jsonrpc.internal.SchemaNode;
 import io.yupiik.uship.jsonrpc.core.api.JsonRpc;
 import io.yupiik.uship.jsonrpc.core.api.JsonRpcMethod;
 import io.yupiik.uship.jsonrpc.core.api.JsonRpcParam;
 import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
+import jakarta.json.JsonArray;
+import jakarta.json.JsonException;
+import jakarta.json.JsonObject;
 import jakarta.json.JsonReaderFactory;
 import jakarta.json.JsonValue;
-import jakarta.json.JsonWriterFactory;
 import jakarta.json.spi.JsonProvider;
 import jakarta.json.stream.JsonGenerator;
+import jakarta.json.stream.JsonGeneratorFactory;
+import jakarta.json.stream.JsonParser;
+import jakarta.json.stream.JsonParserFactory;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 import static io.yupiik.tools.dev.api.UiWidget.TEXTAREA;
 
@@ -39,27 +62,214 @@ import static io.yupiik.tools.dev.api.UiWidget.TEXTAREA;
 @ApplicationScoped
 @UiMetadata(rootLabel = "Formatter", commandPrefix = "json-")
 public class Json {
+    private static final int NDJSON_BATCH_SIZE = 8192;
+    private static final int MAX_REPORTED_ERRORS = 1000;
+    private static final int SCHEMA_CACHE_SIZE = 64;
+
     @Inject
     private JsonReaderFactory readers;
 
     @Inject
     private JsonProvider provider;
 
-    private JsonWriterFactory writers;
+    @Inject
+    private CryptoEngines engines;
+
+    @Inject
+    private RegexConfiguration regexConfiguration;
+
+    private final LruCache<String, JsonSchema> schemas = new LruCache<>(SCHEMA_CACHE_SIZE);
+
+    private JsonParserFactory parsers;
+    private JsonGeneratorFactory formattingGenerators;
+    private JsonGeneratorFactory generators;
 
     @PostConstruct
     private void formattingWriter() {
-        writers = provider.createWriterFactory(Map.of(JsonGenerator.PRETTY_PRINTING, true));
+        parsers = provider.createParserFactory(Map.of());
+        formattingGenerators = provider.createGeneratorFactory(Map.of(JsonGenerator.PRETTY_PRINTING, true));
+        generators = provider.createGeneratorFactory(Map.of());
     }
 
     @JsonRpcMethod(name = "json-format", documentation = "Format a JSON data.")
     public String sign(@JsonRpcParam(documentation = "JSON to format.", required = true) @UiWidget(TEXTAREA) final String value) {
-        final var out = new StringWriter();
-        try (final var reader = readers.createReader(new StringReader(value));
-             final var writer = writers.createWriter(out)) {
-            writer.write(reader.readValue());
+        return pipe(value, formattingGenerators);
+    }
+
+    @JsonRpcMethod(name = "json-format-file", documentation = "Format a local JSON file into another file, the content is streamed so it can be huge.")
+    public FileConversion formatFile(@JsonRpcParam(documentation = "Path of the JSON file to format.", required = true) final String source,
+                                     @JsonRpcParam(documentation = "Path of the file to write the formatted JSON to.", required = true) final String target) {
+        return pipe(source, target, formattingGenerators);
+    }
+
+    @JsonRpcMethod(name = "json-minify", documentation = "Minify a JSON data.")
+    public String minify(@JsonRpcParam(documentation = "JSON to minify.", required = true) @UiWidget(TEXTAREA) final String value) {
+        return pipe(value, generators);
+    }
+
+    @JsonRpcMethod(name = "json-minify-file", documentation = "Minify a local JSON file into another file, the content is streamed so it can be huge.")
+    public FileConversion minifyFile(@JsonRpcParam(documentation = "Path of the JSON file to minify.", required = true) final String source,
+                                     @JsonRpcParam(documentation = "Path of the file to write the minified JSON to.", required = true) final String target) {
+        return pipe(source, target, generators);
+    }
+
+    @JsonRpcMethod(name = "json-query", documentation = "" +
+            "Extract a value from a JSON (text or local file) using a JSON Pointer (/a/b/0) or a JSONPath subset ($.a.b[0]). " +
+            "The document is streamed and parsing stops once the value is found.")
+    public JsonValue query(@JsonRpcParam(documentation = "JSON Pointer or JSONPath (starting with '$', only names and indices are supported) to evaluate.", required = true) final String query,
+                           @JsonRpcParam(documentation = "JSON to query.") @UiWidget(TEXTAREA) final String value,
+                           @JsonRpcParam(documentation = "Path of a local JSON file to query, ignored if value is set.") final String path) {
+        final var tokens = query.startsWith("$") ? JsonStreams.parseJsonPath(query) : JsonStreams.parsePointer(query);
+        try (final var parser = createParser(value, path)) {
+            return JsonStreams.find(parser, tokens)
+                    .orElseThrow(() -> new IllegalArgumentException("No value matching '" + query + "'"));
         }
-        return out.toString();
+    }
+
+    @JsonRpcMethod(name = "json-ndjson", documentation = "" +
+            "Validate and minify a newline delimited JSON (NDJSON) content (text or local file), lines are processed in parallel. " +
+            "Invalid lines are reported with their line number and skipped from the output, blank lines are ignored.")
+    public NdJson ndjson(@JsonRpcParam(documentation = "NDJSON content.") @UiWidget(TEXTAREA) final String value,
+                         @JsonRpcParam(documentation = "Path of a local NDJSON file, ignored if value is set.") final String source,
+                         @JsonRpcParam(documentation = "Path of the file to write the minified lines to when source is set, if not set lines are only validated.") final String target) {
+        if (value == null && source == null) {
+            throw new IllegalArgumentException("No value nor source set");
+        }
+        if (value != null) {
+            final var out = new StringBuilder(value.length());
+            try (final var reader = new BufferedReader(new StringReader(value))) {
+                final var result = ndjson(reader, line -> out.append(line).append('\n'));
+                return new NdJson(result.lines, result.invalid, result.errors, out.toString(), null);
+            } catch (final IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        try (final var reader = Files.newBufferedReader(Path.of(source), StandardCharsets.UTF_8)) {
+            if (target == null) {
+                final var result = ndjson(reader, line -> {
+                });
+                return new NdJson(result.lines, result.invalid, result.errors, null, null);
+            }
+            final var out = Path.of(target);
+            final NdJsonCollector result;
+            try (final var writer = Files.newBufferedWriter(out, StandardCharsets.UTF_8)) {
+                result = ndjson(reader, line -> {
+                    try {
+                        writer.write(line);
+                        writer.write('\n');
+                    } catch (final IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                });
+            }
+            return new NdJson(result.lines, result.invalid, result.errors, null, FileConversion.of(out));
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @JsonRpcMethod(name = "json-validate", documentation = "" +
+            "Validate a JSON (text or local file) against a JSON Schema (draft 7/2020-12 subset, local references only). " +
+            "Compiled schemas are cached by content so validating against the same schema only costs the instance traversal. " +
+            "Schema patterns are evaluated with the same budget as the regex commands.")
+    public Validation validate(@JsonRpcParam(documentation = "JSON Schema.", required = true) @UiWidget(TEXTAREA) final String schema,
+                               @JsonRpcParam(documentation = "JSON to validate.") @UiWidget(TEXTAREA) final String value,
+                               @JsonRpcParam(documentation = "Path of a local JSON file to validate, ignored if value is set.") final String path) {
+        final var validator = schemas.computeIfAbsent(schemaKey(schema), k -> {
+            try (final var parser = parsers.createParser(new StringReader(schema))) {
+                parser.next();
+                return JsonSchema.compile(parser.getValue(), regexConfiguration.getTimeout(), regexConfiguration.getMaxSteps());
+            }
+        });
+        final var errors = validator.validate(read(value, path));
+        return new Validation(errors.isEmpty(), errors);
+    }
+
+    @JsonRpcMethod(name = "json-diff", documentation = "" +
+            "Compute the JSON Patch (RFC 6902) operations transforming a JSON (text or local file) into another one. " +
+            "Identical branches are detected with subtree hashes and arrays are aligned on their longest common subsequence.")
+    public JsonArray diff(@JsonRpcParam(documentation = "Original JSON.") @UiWidget(TEXTAREA) final String source,
+                          @JsonRpcParam(documentation = "Expected JSON.") @UiWidget(TEXTAREA) final String target,
+                          @JsonRpcParam(documentation = "Path of a local original JSON file, ignored if source is set.") final String sourcePath,
+                          @JsonRpcParam(documentation = "Path of a local expected JSON file, ignored if target is set.") final String targetPath) {
+        return JsonDiff.diff(read(source, sourcePath), read(target, targetPath), provider.createPatchBuilder()).build().toJsonArray();
+    }
+
+    @JsonRpcMethod(name = "json-canonicalize", documentation = "" +
+            "Canonicalize a JSON (text or local file) using the JSON Canonicalization Scheme (RFC 8785): " +
+            "sorted keys, no whitespace, minimal string escaping and ECMAScript number formatting. " +
+            "If an algorithm is set, the canonical form is streamed to the digest and the digest is returned instead.")
+    public String canonicalize(@JsonRpcParam(documentation = "JSON to canonicalize.") @UiWidget(TEXTAREA) final String value,
+                               @JsonRpcParam(documentation = "Path of a local JSON file to canonicalize, ignored if value is set.") final String path,
+                               @JsonRpcParam(documentation = "Digest algorithm to apply on the canonical (UTF-8) form.") final Digest.Algorithm algorithm) {
+        if (algorithm == null) {
+            final var out = new StringBuilder(value != null ? value.length() : 1024);
+            try (final var parser = createParser(value, path)) {
+                JsonCanonicalizer.write(parser, out);
+            } catch (final IOException e) { // can't happen with a StringBuilder
+                throw new IllegalStateException(e);
+            }
+            return out.toString();
+        }
+
+        final var hasher = Digest.hasher(engines, algorithm);
+        try (final var parser = createParser(value, path);
+             final var writer = new OutputStreamWriter(ByteStreams.sink(hasher::update), StandardCharsets.UTF_8)) {
+            JsonCanonicalizer.write(parser, writer);
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return hasher.result();
+    }
+
+    @JsonRpcMethod(name = "json-infer-schema", documentation = "" +
+            "Infer a JSON Schema from samples (text or local file): an array of records, a single record or NDJSON lines. " +
+            "Records are streamed and NDJSON lines are processed by chunks in parallel so only the schema is kept in memory.")
+    public JsonObject inferSchema(@JsonRpcParam(documentation = "Samples.") @UiWidget(TEXTAREA) final String value,
+                                  @JsonRpcParam(documentation = "Path of a local file with the samples, ignored if value is set.") final String path,
+                                  @JsonRpcParam(documentation = "If true the samples are NDJSON lines (one record per line), default to false.") final Boolean ndjson,
+                                  @JsonRpcParam(documentation = "Maximum number of distinct string values to consider a field as an enum, default to 10.") final Integer enumLimit) {
+        if (value == null && path == null) {
+            throw new IllegalArgumentException("No value nor path set");
+        }
+        final int limit = enumLimit == null ? 10 : enumLimit;
+        final var root = new SchemaNode(limit);
+        if (Boolean.TRUE.equals(ndjson)) {
+            try (final var reader = value != null ?
+                    new BufferedReader(new StringReader(value)) :
+                    Files.newBufferedReader(Path.of(path), StandardCharsets.UTF_8)) {
+                batches(reader, batch -> root.merge(batch.parallelStream().filter(line -> !line.isBlank()).collect(
+                        () -> new SchemaNode(limit),
+                        (node, line) -> {
+                            try (final var parser = parsers.createParser(new StringReader(line))) {
+                                node.accept(parser, parser.next());
+                            }
+                        },
+                        SchemaNode::merge)));
+            } catch (final IOException e) {
+                throw new IllegalStateException(e);
+            }
+        } else {
+            try (final var parser = createParser(value, path)) {
+                final var event = parser.next();
+                if (event == JsonParser.Event.START_ARRAY) {
+                    var next = parser.next();
+                    while (next != JsonParser.Event.END_ARRAY) {
+                        root.accept(parser, next);
+                        next = parser.next();
+                    }
+                } else {
+                    root.accept(parser, event);
+                }
+            }
+        }
+        if (root.count() == 0) {
+            throw new IllegalArgumentException("No sample");
+        }
+        return provider.createObjectBuilder()
+                .add("$schema", "https://json-schema.org/draft/2020-12/schema")
+                .addAll(provider.createObjectBuilder(root.toSchema(provider)))
+                .build();
     }
 
     @JsonRpcMethod(name = "json-unescape", documentation = "Unescape an escaped JSON string.")
@@ -68,4 +278,122 @@ public class Json {
             return reader.readValue();
         }
     }
+
+    // each batch is processed in parallel and its results are emitted in order
+    private NdJsonCollector ndjson(final BufferedReader reader, final Consumer<String> output) throws IOException {
+        final var collector = new NdJsonCollector();
+        batches(reader, batch -> {
+            final var results = batch.parallelStream().map(this::minifyLine).toList();
+            for (final var result : results) {
+                collector.lines++;
+                if (result.error() != null) {
+                    collector.invalid++;
+                    if (collector.errors.size() < MAX_REPORTED_ERRORS) {
+                        collector.errors.add(new LineError(collector.lines, result.error()));
+                    }
+                } else if (result.json() != null) {
+                    output.accept(result.json());
+                }
+            }
+        });
+        return collector;
+    }
+
+    private void batches(final BufferedReader reader, final Consumer<List<String>> consumer) throws IOException {
+        final var batch = new ArrayList<String>(NDJSON_BATCH_SIZE);
+        String line;
+        do {
+            line = reader.readLine();
+            if (line != null) {
+                batch.add(line);
+                if (batch.size() < NDJSON_BATCH_SIZE) {
+                    continue;
+                }
+            }
+            if (!batch.isEmpty()) {
+                consumer.accept(batch);
+                batch.clear();
+            }
+        } while (line != null);
+    }
+
+    private LineResult minifyLine(final String line) {
+        if (line.isBlank()) {
+            return new LineResult(null, null);
+        }
+        final var out = new StringWriter(line.length());
+        try (final var parser = parsers.createParser(new StringReader(line));
+             final var generator = generators.createGenerator(out)) {
+            JsonStreams.copy(parser, generator);
+        } catch (final JsonException | IllegalStateException e) {
+            return new LineResult(null, e.getMessage());
+        }
+        return new LineResult(out.toString(), null);
+    }
+
+    private String schemaKey(final String schema) {
+        try (final var digest = engines.messageDigest("SHA-256")) {
+            return java.util.Base64.getEncoder().encodeToString(digest.get().digest(schema.getBytes(StandardCharsets.UTF_8)));
+        }
+    }
+
+    private JsonValue read(final String value, final String path) {
+        try (final var parser = createParser(value, path)) {
+            parser.next();
+            return parser.getValue();
+        }
+    }
+
+    private JsonParser createParser(final String value, final String path) {
+        if (value != null) {
+            return parsers.createParser(new StringReader(value));
+        }
+        if (path != null) {
+            try {
+                return parsers.createParser(Files.newInputStream(Path.of(path)));
+            } catch (final IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        throw new IllegalArgumentException("No value nor path set");
+    }
+
+    // parser events are written as they come so no JSON tree is materialized
+    private String pipe(final String value, final JsonGeneratorFactory factory) {
+        final var out = new StringWriter();
+        try (final var parser = parsers.createParser(new StringReader(value));
+             final var generator = factory.createGenerator(out)) {
+            JsonStreams.copy(parser, generator);
+        }
+        return out.toString();
+    }
+
+    private FileConversion pipe(final String source, final String target, final JsonGeneratorFactory factory) {
+        final var out = Path.of(target);
+        try (final var parser = parsers.createParser(Files.newInputStream(Path.of(source)));
+             final var generator = factory.createGenerator(Files.newOutputStream(out), StandardCharsets.UTF_8)) {
+            JsonStreams.copy(parser, generator);
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return FileConversion.of(out);
+    }
+
+    public record NdJson(long lines, long invalid, List<LineError> errors, String output, FileConversion target) {
+    }
+
+    public record LineError(long line, String message) {
+    }
+
+    public record Validation(boolean valid, List<JsonSchema.Error> errors) {
+    }
+
+    private record LineResult(String json, String error) {
+    }
+
+    private static class NdJsonCollector {
+        private long lines;
+        private long invalid;
+        private final List<LineError> errors = new ArrayList<>();
+    }
 }
@@ -17,53 +17,537 @@ package io.yupiik.tools.dev.jsonrpc;
 
 import io.yupiik.tools.dev.api.UiMetadata;
 import io.yupiik.tools.dev.api.UiWidget;
+import io.yupiik.tools.dev.configuration.RegexConfiguration;
+import io.yupiik.tools.dev.jsonrpc.internal.AhoCorasick;
+import io.yupiik.tools.dev.jsonrpc.internal.BudgetCharSequence;
+import io.yupiik.tools.dev.jsonrpc.internal.LineRanges;
+import io.yupiik.tools.dev.jsonrpc.internal.LruCache;
 import io.yupiik.uship.jsonrpc.core.api.JsonRpc;
 import io.yupiik.uship.jsonrpc.core.api.JsonRpcMethod;
 import io.yupiik.uship.jsonrpc.core.api.JsonRpcParam;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
 
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.IntStream;
 
 import static io.yupiik.tools.dev.api.UiWidget.TEXTAREA;
+import static java.util.Comparator.comparingInt;
 
 @JsonRpc
 @ApplicationScoped
 @UiMetadata(rootLabel = "Text", commandPrefix = "regex-")
 public class Regex {
+    private static final int PATTERN_CACHE_SIZE = 256;
+    private static final int DEFAULT_GREP_MAX_MATCHES = 1_000;
+    private static final long GREP_RANGE_SIZE = 32 * 1024 * 1024;
+    private static final int MAX_PROFILE_WARMUP = 10_000;
+    private static final int MAX_PROFILE_DURATION = 30_000;
+    private static final int MIN_PROFILE_SAMPLES = 1_024;
+    private static final int MAX_PROFILE_SAMPLES = 1_000_000;
+
+    // group numbers and names would conflict once combined with other patterns
+    private static final Pattern SELF_REFERENCING = Pattern.compile("\\\\[1-9]|\\\\k<|\\(\\?<[a-zA-Z]");
+
+    // an unterminated quote (\Q) or an inline comments flag ((?x)) would swallow the end of the alternation
+    private static final Pattern ALTERNATION_BREAKING = Pattern.compile("\\\\Q|\\(\\?[a-zA-Z-]*x");
+
+    // the UI calls the methods on each keystroke with the same pattern so compiled patterns are reused
+    private final LruCache<PatternKey, Pattern> patterns = new LruCache<>(PATTERN_CACHE_SIZE);
+
+    @Inject
+    private RegexConfiguration configuration;
+
+    private volatile long blackhole; // ensures profiled operations are not optimized away
+
     @JsonRpcMethod(name = "regex-matches", documentation = "Enables to test 'matches' of a regex.")
-    public Matches matches(@JsonRpcParam(documentation = "Regex to test.", required = true) final String regex, @JsonRpcParam(documentation = "Text to test the regex against.", required = true) @UiWidget(TEXTAREA) final String text) {
-        final var pattern = Pattern.compile(regex);
-        final var matcher = pattern.matcher(text);
+    public Matches matches(@JsonRpcParam(documentation = "Regex to test.", required = true) final String regex, @JsonRpcParam(documentation = "Text to test the regex against.", required = true) @UiWidget(TEXTAREA) final String text,
+                           @JsonRpcParam(documentation = "Pattern flags.") final List<Flag> flags) {
+        final var pattern = compile(regex, flags);
+        final var matcher = pattern.matcher(budget(text));
         final var matches = matcher.matches();
         final var groupCount = matcher.groupCount();
         return new Matches(matches, getGroups(matcher, groupCount));
     }
 
     @JsonRpcMethod(name = "regex-find", documentation = "Enables to test 'finds' of a regex.")
-    public Finds find(@JsonRpcParam(documentation = "Regex to test.", required = true) final String regex, @JsonRpcParam(documentation = "Text to test the regex against.", required = true) @UiWidget(TEXTAREA) final String text) {
-        final var pattern = Pattern.compile(regex);
-        final var matcher = pattern.matcher(text);
-        final var finds = new ArrayList<Find>();
+    public Finds find(@JsonRpcParam(documentation = "Regex to test.", required = true) final String regex, @JsonRpcParam(documentation = "Text to test the regex against.", required = true) @UiWidget(TEXTAREA) final String text,
+                      @JsonRpcParam(documentation = "Pattern flags.") final List<Flag> flags,
+                      @JsonRpcParam(documentation = "Number of matches to skip, default to 0.") final Integer offset,
+                      @JsonRpcParam(documentation = "Maximum number of matches to return, default to all.") final Integer limit,
+                      @JsonRpcParam(documentation = "If true, only the number of matches is returned.") final Boolean countOnly,
+                      @JsonRpcParam(documentation = "If true, only match spans (start/end) are returned, not the groups.") final Boolean spansOnly) {
+        final int skip = offset == null ? 0 : offset;
+        final int max = limit == null ? Integer.MAX_VALUE : limit;
+        if (skip < 0 || max < 0) {
+            throw new IllegalArgumentException("offset and limit can't be negative");
+        }
+
+        final var pattern = compile(regex, flags);
+        final var matcher = pattern.matcher(budget(text));
+        if (Boolean.TRUE.equals(countOnly)) {
+            long count = 0;
+            while (matcher.find()) {
+                count++;
+            }
+            return new Finds(null, count, false);
+        }
+
+        final boolean groups = !Boolean.TRUE.equals(spansOnly);
+        final var finds = new ArrayList<Find>(Math.min(max, 16));
+        int index = 0;
+        boolean truncated = false;
         while (matcher.find()) {
-            finds.add(new Find(matcher.start(), getGroups(matcher, matcher.groupCount())));
+            if (index++ < skip) {
+                continue;
+            }
+            if (finds.size() == max) {
+                truncated = true;
+                break;
+            }
+            finds.add(new Find(matcher.start(), matcher.end(), groups ? getGroups(matcher, matcher.groupCount()) : null));
         }
-        return new Finds(finds);
+        return new Finds(finds, null, truncated);
+    }
+
+    @JsonRpcMethod(name = "regex-find-many", documentation = "" +
+            "Find the matches of several regexes in a single pass over the text. " +
+            "Literal patterns (without any regex special character) are matched with an Aho-Corasick automaton and report all their occurrences, " +
+            "other ones are combined in a single alternation so when several of them match at the same position the first one in the list wins " +
+            "and a match hides the matches of the other combined patterns starting inside it (as a single regex with alternatives would do). " +
+            "Patterns using backreferences, named groups, quoting (\\Q) or an inline comments flag, and all patterns when LITERAL or COMMENTS flags " +
+            "are set, are scanned separately so they report all their (non overlapping) matches.")
+    public ManyFinds findMany(@JsonRpcParam(documentation = "Regexes to look for.", required = true) final List<String> regexes,
+                              @JsonRpcParam(documentation = "Text to test the regexes against.", required = true) @UiWidget(TEXTAREA) final String text,
+                              @JsonRpcParam(documentation = "Pattern flags (literals are only handled with the automaton without flags or with LITERAL alone).") final List<Flag> flags) {
+        if (regexes.isEmpty()) {
+            throw new IllegalArgumentException("No regex");
+        }
+
+        final var literals = new ArrayList<Integer>();
+        final var combinable = new ArrayList<Integer>();
+        final var standalone = new ArrayList<Integer>();
+        final int flagsValue = flags(flags);
+        // LITERAL or COMMENTS would change the meaning of the alternation itself (a # comments the next alternatives)
+        final boolean combine = (flagsValue & (Pattern.LITERAL | Pattern.COMMENTS)) == 0;
+        for (int i = 0; i < regexes.size(); i++) {
+            final var regex = regexes.get(i);
+            if (regex.isEmpty()) {
+                throw new IllegalArgumentException("Empty regex at index " + i);
+            }
+            if (flagsValue == 0 && isLiteral(regex) || flagsValue == Pattern.LITERAL) {
+                literals.add(i);
+            } else if (!combine || SELF_REFERENCING.matcher(regex).find() || ALTERNATION_BREAKING.matcher(regex).find()) {
+                standalone.add(i);
+            } else {
+                combinable.add(i);
+            }
+        }
+
+        final var finds = new ArrayList<ManyFind>();
+        final var budgetedText = budget(text);
+        if (!literals.isEmpty()) {
+            final var automaton = new AhoCorasick(literals.stream().map(regexes::get).toList());
+            final var lastEnds = new int[literals.size()]; // same literal occurrences don't overlap, like find() does
+            automaton.scan(budgetedText, (literal, start, end) -> {
+                if (start >= lastEnds[literal]) {
+                    lastEnds[literal] = end;
+                    finds.add(new ManyFind(literals.get(literal), start, end));
+                }
+            });
+        }
+        if (!combinable.isEmpty()) {
+            // each pattern is wrapped in a group, its index is the number of groups before it plus one
+            final var alternation = new StringBuilder();
+            final var groups = new int[combinable.size()];
+            int group = 1;
+            for (int i = 0; i < combinable.size(); i++) {
+                final var regex = regexes.get(combinable.get(i));
+                if (i > 0) {
+                    alternation.append('|');
+                }
+                alternation.append('(').append(regex).append(')');
+                groups[i] = group;
+                // not cached, only the combined pattern is reused
+                group += 1 + Pattern.compile(regex, flagsValue).matcher("").groupCount();
+            }
+            final var matcher = compile(alternation.toString(), flags).matcher(budgetedText);
+            while (matcher.find()) {
+                for (int i = 0; i < groups.length; i++) {
+                    if (matcher.start(groups[i]) >= 0) {
+                        finds.add(new ManyFind(combinable.get(i), matcher.start(), matcher.end()));
+                        break;
+                    }
+                }
+            }
+        }
+        for (final int index : standalone) {
+            final var matcher = compile(regexes.get(index), flags).matcher(budgetedText);
+            while (matcher.find()) {
+                finds.add(new ManyFind(index, matcher.start(), matcher.end()));
+            }
+        }
+
+        finds.sort(comparingInt(ManyFind::start).thenComparingInt(ManyFind::pattern));
+        return new ManyFinds(finds);
+    }
+
+    @JsonRpcMethod(name = "regex-grep", documentation = "" +
+            "Find the lines of a local (UTF-8) file matching a regex. " +
+            "The file is split in line aligned ranges read through memory mapping and processed in parallel, " +
+            "matches are returned in line order. The regex budget applies to each line.")
+    public Grep grep(@JsonRpcParam(documentation = "Regex to look for in each line.", required = true) final String regex,
+                     @JsonRpcParam(documentation = "Path of the local file to scan.", required = true) final String path,
+                     @JsonRpcParam(documentation = "Pattern flags.") final List<Flag> flags,
+                     @JsonRpcParam(documentation = "Number of lines to return before and after each matching line, default to 0.") final Integer context,
+                     @JsonRpcParam(documentation = "Maximum number of matching lines to return, default to 1000.") final Integer maxMatches) {
+        final int contextLines = context == null ? 0 : context;
+        final int max = maxMatches == null ? DEFAULT_GREP_MAX_MATCHES : maxMatches;
+        if (contextLines < 0 || max <= 0) {
+            throw new IllegalArgumentException("context can't be negative and maxMatches must be positive");
+        }
+
+        final var pattern = compile(regex, flags);
+        try (final var channel = FileChannel.open(Path.of(path), StandardOpenOption.READ)) {
+            final var ranges = LineRanges.split(channel, GREP_RANGE_SIZE);
+            final var merger = new GrepMerger(contextLines, max);
+            // ranges are scanned by waves to stop early once enough matches are found
+            final int wave = Math.max(2, ForkJoinPool.getCommonPoolParallelism() * 2);
+            int next = 0;
+            while (next < ranges.size() && merger.needsMoreLines()) {
+                final var results = ranges.subList(next, Math.min(ranges.size(), next + wave)).parallelStream()
+                        .map(range -> scan(channel, range, pattern, contextLines, max))
+                        .toList();
+                next += results.size();
+                results.forEach(merger::add);
+            }
+            return merger.result(next < ranges.size());
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @JsonRpcMethod(name = "regex-profile", documentation = "" +
+            "Measure the cost of a regex against a text: the pattern is compiled once then 'matches' or 'find' (all matches) runs " +
+            "during a warmup and a measurement period, each run being bounded by the regex evaluation budget. " +
+            "Returns the throughput, latency percentiles (nanoseconds) and allocated bytes per operation (-1 if the JVM does not support it).")
+    public Profile profile(@JsonRpcParam(documentation = "Regex to profile.", required = true) final String regex,
+                           @JsonRpcParam(documentation = "Text to evaluate the regex against.", required = true) @UiWidget(TEXTAREA) final String text,
+                           @JsonRpcParam(documentation = "Pattern flags.") final List<Flag> flags,
+                           @JsonRpcParam(documentation = "Operation to measure, default to FIND.") final Operation operation,
+                           @JsonRpcParam(documentation = "Warmup duration in milliseconds, default to 500, max 10000.") final Integer warmup,
+                           @JsonRpcParam(documentation = "Measurement duration in milliseconds, default to 1000, max 30000.") final Integer duration) {
+        final long warmupNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, Math.min(MAX_PROFILE_WARMUP, warmup == null ? 500 : warmup)));
+        final long durationNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, Math.min(MAX_PROFILE_DURATION, duration == null ? 1_000 : duration)));
+        final var pattern = compile(regex, flags);
+        final var mode = operation == null ? Operation.FIND : operation;
+
+        // each run is budgeted (same text instance reset per run to not allocate in the measured loop)
+        final var budgeted = budget(text);
+        final var matcher = pattern.matcher(budgeted);
+
+        final long warmupStart = System.nanoTime();
+        long sink = mode.run(matcher.reset(budgeted.reset()));
+        long warmupCount = 1;
+        final long warmupEnd = warmupStart + warmupNanos;
+        long now;
+        while ((now = System.nanoTime()) - warmupEnd < 0) {
+            sink += mode.run(matcher.reset(budgeted.reset()));
+            warmupCount++;
+        }
+
+        // samples are sized from the warmup throughput (with some margin) instead of the max samples count
+        final double expected = warmupCount * (double) durationNanos / Math.max(1, now - warmupStart);
+        long[] samples = new long[(int) Math.max(MIN_PROFILE_SAMPLES, Math.min(MAX_PROFILE_SAMPLES, 2 * expected))];
+        final var threads = ManagementFactory.getThreadMXBean();
+        final var allocations = threads instanceof com.sun.management.ThreadMXBean bean && bean.isThreadAllocatedMemorySupported() ?
+                bean : null;
+        long samplesAllocation = 0;
+        final long allocatedBefore = allocations != null ? allocations.getCurrentThreadAllocatedBytes() : 0;
+        final long start = System.nanoTime();
+        final long end = start + durationNanos;
+        int count = 0;
+        do {
+            budgeted.reset();
+            final long operationStart = System.nanoTime();
+            sink += mode.run(matcher.reset(budgeted));
+            samples[count++] = System.nanoTime() - operationStart;
+            if (count == samples.length && count < MAX_PROFILE_SAMPLES) { // underestimated, rare
+                final long allocatedBeforeCopy = allocations != null ? allocations.getCurrentThreadAllocatedBytes() : 0;
+                samples = Arrays.copyOf(samples, (int) Math.min(MAX_PROFILE_SAMPLES, 2L * count));
+                samplesAllocation += allocations != null ? allocations.getCurrentThreadAllocatedBytes() - allocatedBeforeCopy : 0;
+            }
+        } while (count < samples.length && System.nanoTime() - end < 0);
+        final long elapsed = System.nanoTime() - start;
+        final long allocatedAfter = allocations != null ? allocations.getCurrentThreadAllocatedBytes() - samplesAllocation : 0;
+        blackhole = sink;
+
+        Arrays.sort(samples, 0, count);
+        return new Profile(
+                mode, count, count * 1_000_000_000. / elapsed,
+                percentile(samples, count, .5), percentile(samples, count, .9), percentile(samples, count, .99), samples[count - 1],
+                allocations != null ? (allocatedAfter - allocatedBefore) / (double) count : -1);
+    }
+
+    @JsonRpcMethod(name = "regex-cache-stats", documentation = "Returns the compiled pattern cache statistics.")
+    public LruCache.Stats cacheStats() {
+        return patterns.stats();
+    }
+
+    private GrepRange scan(final FileChannel channel, final LineRanges.Range range, final Pattern pattern,
+                           final int context, final int max) {
+        final var result = new GrepRange(context, max);
+        final var matcher = pattern.matcher("");
+        try {
+            LineRanges.forEachLine(channel, range, line -> result.accept(line, matcher.reset(budget(line)).find()));
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return result;
+    }
+
+    private long percentile(final long[] sorted, final int count, final double percentile) {
+        return sorted[Math.max(0, Math.min(count - 1, (int) Math.ceil(percentile * count) - 1))];
+    }
+
+    private boolean isLiteral(final String regex) {
+        for (int i = 0; i < regex.length(); i++) {
+            if ("\\^$.|?*+()[]{}".indexOf(regex.charAt(i)) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // a pathological pattern must not hold the calling thread forever
+    private BudgetCharSequence budget(final CharSequence text) {
+        return new BudgetCharSequence(text, configuration.getTimeout(), configuration.getMaxSteps());
+    }
+
+    private Pattern compile(final String regex, final List<Flag> flags) {
+        return patterns.computeIfAbsent(new PatternKey(regex, flags(flags)), k -> Pattern.compile(k.regex(), k.flags()));
+    }
+
+    private int flags(final List<Flag> flags) {
+        int value = 0;
+        if (flags != null) {
+            for (final var flag : flags) {
+                value |= flag.value;
+            }
+        }
+        return value;
     }
 
     private List<String> getGroups(final Matcher matcher, final int groupCount) {
         return groupCount > 0 ? IntStream.range(0, groupCount).mapToObj(matcher::group).toList() : null;
     }
 
+    public enum Flag {
+        CASE_INSENSITIVE(Pattern.CASE_INSENSITIVE),
+        MULTILINE(Pattern.MULTILINE),
+        DOTALL(Pattern.DOTALL),
+        UNICODE_CASE(Pattern.UNICODE_CASE),
+        UNICODE_CHARACTER_CLASS(Pattern.UNICODE_CHARACTER_CLASS),
+        COMMENTS(Pattern.COMMENTS),
+        LITERAL(Pattern.LITERAL),
+        UNIX_LINES(Pattern.UNIX_LINES),
+        CANON_EQ(Pattern.CANON_EQ);
+
+        private final int value;
+
+        Flag(final int value) {
+            this.value = value;
+        }
+    }
+
+    public enum Operation {
+        MATCHES {
+            @Override
+            long run(final Matcher matcher) {
+                return matcher.matches() ? 1 : 0;
+            }
+        },
+        FIND {
+            @Override
+            long run(final Matcher matcher) {
+                long count = 0;
+                while (matcher.find()) {
+                    count++;
+                }
+                return count;
+            }
+        };
+
+        abstract long run(Matcher matcher);
+    }
+
+    private record PatternKey(String regex, int flags) {
+    }
+
     public record Matches(boolean matches, List<String> groups) {
     }
 
-    public record Finds(List<Find> finds) {
+    public record Finds(List<Find> finds, Long count, boolean truncated) {
+    }
+
+    public record Find(int start, int end, List<String> groups) {
+    }
+
+    public record Profile(Operation operation, long operations, double operationsPerSecond,
+                          long p50, long p90, long p99, long max, double allocatedBytesPerOperation) {
+    }
+
+    public record Grep(List<GrepMatch> matches, long scannedLines, boolean truncated) {
+    }
+
+    public record GrepMatch(long line, String text, List<String> before, List<String> after) {
+    }
+
+    // matches of a range, line numbers are relative to the range and contexts can miss lines of the surrounding ranges
+    private static final class GrepRange {
+        private final int context;
+        private final int max;
+        private final List<String> head = new ArrayList<>();
+        private final ArrayDeque<String> tail = new ArrayDeque<>();
+        private final List<GrepHit> hits = new ArrayList<>();
+        private final List<GrepHit> waitingAfter = new ArrayList<>();
+        private long lines;
+
+        private GrepRange(final int context, final int max) {
+            this.context = context;
+            this.max = max;
+        }
+
+        private void accept(final String line, final boolean matches) {
+            if (!waitingAfter.isEmpty()) {
+                final var it = waitingAfter.iterator();
+                while (it.hasNext()) {
+                    final var hit = it.next();
+                    hit.after.add(line);
+                    if (hit.after.size() == context) {
+                        it.remove();
+                    }
+                }
+            }
+            if (matches && hits.size() <= max) { // one more than needed tells the merger the result is truncated
+                final var hit = new GrepHit(lines, line, new ArrayList<>(tail));
+                hits.add(hit);
+                if (context > 0) {
+                    waitingAfter.add(hit);
+                }
+            }
+            if (context > 0) {
+                if (head.size() < context) {
+                    head.add(line);
+                }
+                tail.addLast(line);
+                if (tail.size() > context) {
+                    tail.removeFirst();
+                }
+            }
+            lines++;
+        }
+    }
+
+    private static final class GrepHit {
+        private final long line;
+        private final String text;
+        private final List<String> before;
+        private final List<String> after = new ArrayList<>();
+
+        private GrepHit(final long line, final String text, final List<String> before) {
+            this.line = line;
+            this.text = text;
+            this.before = before;
+        }
+    }
+
+    // merges ranges in order: absolute line numbers and contexts spanning several ranges
+    private static final class GrepMerger {
+        private final int context;
+        private final int max;
+        private final ArrayDeque<String> tail = new ArrayDeque<>();
+        private final List<GrepMatch> matches = new ArrayList<>();
+        private final List<List<String>> waitingAfter = new ArrayList<>();
+        private long lines;
+        private boolean truncated;
+
+        private GrepMerger(final int context, final int max) {
+            this.context = context;
+            this.max = max;
+        }
+
+        private boolean needsMoreLines() {
+            return matches.size() < max || !waitingAfter.isEmpty();
+        }
+
+        private void add(final GrepRange range) {
+            if (!waitingAfter.isEmpty()) {
+                final var it = waitingAfter.iterator();
+                while (it.hasNext()) {
+                    final var after = it.next();
+                    final int missing = context - after.size();
+                    after.addAll(range.head.subList(0, Math.min(missing, range.head.size())));
+                    if (after.size() == context) {
+                        it.remove();
+                    }
+                }
+            }
+            for (final var hit : range.hits) {
+                if (matches.size() == max) {
+                    truncated = true;
+                    break;
+                }
+                final List<String> before;
+                final List<String> after;
+                if (context == 0) {
+                    before = null;
+                    after = null;
+                } else {
+                    final int missing = context - hit.before.size();
+                    if (missing > 0 && !tail.isEmpty()) {
+                        final var previous = new ArrayList<>(tail);
+                        before = new ArrayList<>(previous.subList(Math.max(0, previous.size() - missing), previous.size()));
+                        before.addAll(hit.before);
+                    } else {
+                        before = hit.before;
+                    }
+                    after = hit.after;
+                    if (after.size() < context) {
+                        waitingAfter.add(after);
+                    }
+                }
+                matches.add(new GrepMatch(lines + hit.line + 1, hit.text, before, after));
+            }
+            for (final var line : range.tail) {
+                tail.addLast(line);
+                if (tail.size() > context) {
+                    tail.removeFirst();
+                }
+            }
+            lines += range.lines;
+        }
+
+        private Grep result(final boolean stoppedEarly) {
+            return new Grep(matches, lines, truncated || (stoppedEarly && matches.size() == max));
+        }
+    }
+
+    public record ManyFinds(List<ManyFind> finds) {
     }
 
-    public record Find(int start, List<String> groups) {
+    public record ManyFind(int pattern, int start, int end) {
     }
 }
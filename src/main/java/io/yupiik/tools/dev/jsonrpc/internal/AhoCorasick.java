@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2022 - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.tools.dev.jsonrpc.internal;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Aho-Corasick automaton finding all the occurrences of a set of literals in a single pass over a text,
+ * cost is proportional to the text length plus the number of reported occurrences whatever the number of literals.
+ * <p>
+ * Transitions of a node are stored as sorted character arrays (binary search) to stay compact for large alphabets.
+ */
+public final class AhoCorasick {
+    private final char[][] keys;
+    private final int[][] targets;
+    private final int[] failures;
+    private final int[][] outputs; // literal indices ending at each node, including the ones reached through failure links
+    private final int[] lengths;
+
+    public AhoCorasick(final List<String> literals) {
+        lengths = new int[literals.size()];
+        final var trieKeys = new ArrayList<StringBuilder>();
+        final var trieTargets = new ArrayList<List<Integer>>();
+        final var trieOutputs = new ArrayList<List<Integer>>();
+        trieKeys.add(new StringBuilder());
+        trieTargets.add(new ArrayList<>());
+        trieOutputs.add(new ArrayList<>());
+        for (int i = 0; i < literals.size(); i++) {
+            final var literal = literals.get(i);
+            if (literal.isEmpty()) {
+                throw new IllegalArgumentException("Empty literal at index " + i);
+            }
+            lengths[i] = literal.length();
+            int node = 0;
+            for (int c = 0; c < literal.length(); c++) {
+                final int position = trieKeys.get(node).indexOf(String.valueOf(literal.charAt(c)));
+                if (position >= 0) {
+                    node = trieTargets.get(node).get(position);
+                } else {
+                    trieKeys.get(node).append(literal.charAt(c));
+                    trieTargets.get(node).add(trieKeys.size());
+                    node = trieKeys.size();
+                    trieKeys.add(new StringBuilder());
+                    trieTargets.add(new ArrayList<>());
+                    trieOutputs.add(new ArrayList<>());
+                }
+            }
+            trieOutputs.get(node).add(i);
+        }
+
+        final int size = trieKeys.size();
+        keys = new char[size][];
+        targets = new int[size][];
+        for (int node = 0; node < size; node++) { // sort transitions for the binary search
+            final var chars = trieKeys.get(node).toString().toCharArray();
+            final var nodeTargets = trieTargets.get(node);
+            final var order = new Integer[chars.length];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Character.compare(chars[a], chars[b]));
+            keys[node] = new char[chars.length];
+            targets[node] = new int[chars.length];
+            for (int i = 0; i < order.length; i++) {
+                keys[node][i] = chars[order[i]];
+                targets[node][i] = nodeTargets.get(order[i]);
+            }
+        }
+
+        // breadth first so failure targets (shorter) are complete before their children
+        failures = new int[size];
+        outputs = new int[size][];
+        outputs[0] = new int[0];
+        final var queue = new ArrayDeque<Integer>();
+        for (final int child : targets[0]) {
+            failures[child] = 0;
+            outputs[child] = trieOutputs.get(child).stream().mapToInt(Integer::intValue).toArray();
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            final int node = queue.poll();
+            for (int i = 0; i < keys[node].length; i++) {
+                final char c = keys[node][i];
+                final int child = targets[node][i];
+                int failure = failures[node];
+                int next;
+                while ((next = next(failure, c)) < 0 && failure != 0) {
+                    failure = failures[failure];
+                }
+                failures[child] = Math.max(next, 0);
+                final var own = trieOutputs.get(child);
+                final var inherited = outputs[failures[child]];
+                final var merged = new int[own.size() + inherited.length];
+                for (int o = 0; o < own.size(); o++) {
+                    merged[o] = own.get(o);
+                }
+                System.arraycopy(inherited, 0, merged, own.size(), inherited.length);
+                outputs[child] = merged;
+                queue.add(child);
+            }
+        }
+    }
+
+    /**
+     * Reports all the occurrences (including overlapping ones) ordered by end position.
+     *
+     * @param text     the text to scan.
+     * @param listener the occurrence callback.
+     */
+    public void scan(final CharSequence text, final Listener listener) {
+        int node = 0;
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            int next;
+            while ((next = next(node, c)) < 0 && node != 0) {
+                node = failures[node];
+            }
+            node = Math.max(next, 0);
+            for (final int literal : outputs[node]) {
+                listener.onMatch(literal, i + 1 - lengths[literal], i + 1);
+            }
+        }
+    }
+
+    private int next(final int node, final char c) {
+        final int index = Arrays.binarySearch(keys[node], c);
+        return index >= 0 ? targets[node][index] : -1;
+    }
+
+    @FunctionalInterface
+    public interface Listener {
+        /**
+         * @param literal index of the literal in the constructor list.
+         * @param start   start of the occurrence (inclusive).
+         * @param end     end of the occurrence (exclusive).
+         */
+        void onMatch(int literal, int start, int end);
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2022 - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.tools.dev.jsonrpc.internal;
+
+/**
+ * Wraps the text a regex is evaluated against to bound its cost: {@link java.util.regex.Matcher} reads
+ * the text through {@link #charAt(int)} so counting reads bounds backtracking and the deadline
+ * (as well as the thread interruption) is checked periodically, when a limit is reached the
+ * evaluation fails with a {@link BudgetExceededException}.
+ * <p>
+ * Instances are not thread safe, use one per evaluation (or {@link #reset()} it between evaluations).
+ */
+public final class BudgetCharSequence implements CharSequence {
+    private static final int CHECK_INTERVAL_MASK = 0x3ff; // check time every 1024 reads
+
+    private final CharSequence delegate;
+    private final long maxSteps;
+    private long deadline;
+    private final long timeout;
+    private long steps;
+
+    /**
+     * @param delegate the text.
+     * @param timeout  timeout in milliseconds, ignored if not positive.
+     * @param maxSteps maximum number of character reads, ignored if not positive.
+     */
+    public BudgetCharSequence(final CharSequence delegate, final long timeout, final long maxSteps) {
+        this.delegate = delegate;
+        this.timeout = timeout;
+        this.maxSteps = maxSteps > 0 ? maxSteps : Long.MAX_VALUE;
+        this.deadline = timeout > 0 ? System.nanoTime() + timeout * 1_000_000 : Long.MAX_VALUE;
+    }
+
+    /**
+     * Restarts the budget (steps and deadline) for a new evaluation.
+     *
+     * @return this instance.
+     */
+    public BudgetCharSequence reset() {
+        steps = 0;
+        deadline = timeout > 0 ? System.nanoTime() + timeout * 1_000_000 : Long.MAX_VALUE;
+        return this;
+    }
+
+    @Override
+    public char charAt(final int index) {
+        if (++steps > maxSteps) {
+            throw new BudgetExceededException("Regex evaluation budget exceeded: more than " + maxSteps + " steps");
+        }
+        if ((steps & CHECK_INTERVAL_MASK) == 0) {
+            if (deadline != Long.MAX_VALUE && System.nanoTime() - deadline > 0) {
+                throw new BudgetExceededException("Regex evaluation budget exceeded: took more than " + timeout + "ms");
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                throw new BudgetExceededException("Regex evaluation interrupted");
+            }
+        }
+        return delegate.charAt(index);
+    }
+
+    @Override
+    public int length() {
+        return delegate.length();
+    }
+
+    // used to extract groups, no need to count it: the returned sequence is NOT budgeted so it must not be matched against
+    @Override
+    public CharSequence subSequence(final int start, final int end) {
+        return delegate.subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+        return delegate.toString();
+    }
+
+    public static class BudgetExceededException extends IllegalStateException {
+        private static final long serialVersionUID = 1L;
+
+        public BudgetExceededException(final String message) {
+            super(message);
+        }
+    }
+}
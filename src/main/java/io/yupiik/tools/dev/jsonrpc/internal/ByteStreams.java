@@ -0,0 +1,301 @@
+/*
+ * Copyright (c) 2022 - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.tools.dev.jsonrpc.internal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.HexFormat;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Byte oriented plumbing shared by the encoding and digest tools:
+ * textual encodings (base64, hex) are read/written as byte streams directly from/to the JSON-RPC strings
+ * so chaining conversions never materializes intermediate strings nor full byte arrays.
+ */
+public final class ByteStreams {
+    public static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private ByteStreams() {
+        // no-op
+    }
+
+    /**
+     * @param value an ASCII value (base64, hex, ...).
+     * @return a stream of the ASCII bytes of the value.
+     */
+    public static InputStream asciiInput(final CharSequence value) {
+        return new CharSequenceInputStream(value);
+    }
+
+    /**
+     * @param value an hexadecimal value.
+     * @return a stream of the decoded bytes.
+     */
+    public static InputStream hexDecoder(final CharSequence value) {
+        if (value.length() % 2 != 0) {
+            throw new IllegalArgumentException("Hexadecimal value length must be even, got " + value.length());
+        }
+        return new HexInputStream(value);
+    }
+
+    /**
+     * @param out where to append the ASCII characters written as bytes.
+     * @return a stream appending the written bytes as characters to {@code out}.
+     */
+    public static OutputStream asciiOutput(final StringBuilder out) {
+        return new OutputStream() {
+            @Override
+            public void write(final int b) {
+                out.append((char) (b & 0xff));
+            }
+
+            @Override
+            public void write(final byte[] b, final int off, final int len) {
+                out.ensureCapacity(out.length() + len);
+                for (int i = off; i < off + len; i++) {
+                    out.append((char) (b[i] & 0xff));
+                }
+            }
+        };
+    }
+
+    /**
+     * @param out where to append the hexadecimal representation of the written bytes.
+     * @return a stream encoding the written bytes in hexadecimal.
+     */
+    public static OutputStream hexEncoder(final StringBuilder out) {
+        return new OutputStream() {
+            @Override
+            public void write(final int b) {
+                out.append(HEX_DIGITS[(b >> 4) & 0xf]).append(HEX_DIGITS[b & 0xf]);
+            }
+
+            @Override
+            public void write(final byte[] b, final int off, final int len) {
+                out.ensureCapacity(out.length() + 2 * len);
+                for (int i = off; i < off + len; i++) {
+                    out.append(HEX_DIGITS[(b[i] >> 4) & 0xf]).append(HEX_DIGITS[b[i] & 0xf]);
+                }
+            }
+        };
+    }
+
+    /**
+     * @param consumer the chunk consumer, buffers are only valid during the call.
+     * @return a stream forwarding written bytes to {@code consumer} without copying them.
+     */
+    public static OutputStream sink(final Consumer<ByteBuffer> consumer) {
+        return new OutputStream() {
+            @Override
+            public void write(final int b) {
+                consumer.accept(ByteBuffer.wrap(new byte[]{(byte) b}));
+            }
+
+            @Override
+            public void write(final byte[] b, final int off, final int len) {
+                if (len > 0) {
+                    consumer.accept(ByteBuffer.wrap(b, off, len));
+                }
+            }
+        };
+    }
+
+    /**
+     * Reads the stream chunk by chunk, the buffer passed to the consumer is reused between calls.
+     *
+     * @param in       the stream to read (closed at the end).
+     * @param consumer the chunk consumer.
+     */
+    public static void pump(final InputStream in, final Consumer<ByteBuffer> consumer) {
+        final var buffer = new byte[BUFFER_SIZE];
+        try (in) {
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                if (read > 0) {
+                    consumer.accept(ByteBuffer.wrap(buffer, 0, read));
+                }
+            }
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Copies a stream to another one, both are closed at the end (which flushes encoders padding).
+     *
+     * @param in  source stream.
+     * @param out target stream.
+     */
+    public static void copy(final InputStream in, final OutputStream out) {
+        try (in; out) {
+            in.transferTo(out);
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Encodes a byte stream as an ASCII hexadecimal stream with fixed size buffers, both streams are closed at the end.
+     *
+     * @param in  raw bytes.
+     * @param out hexadecimal output.
+     */
+    public static void hexEncode(final InputStream in, final OutputStream out) {
+        final var buffer = new byte[BUFFER_SIZE / 2];
+        final var encoded = new byte[BUFFER_SIZE];
+        try (in; out) {
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                HexCodec.encode(buffer, 0, read, encoded, 0);
+                out.write(encoded, 0, read * 2);
+            }
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Decodes an ASCII hexadecimal stream with fixed size buffers, both streams are closed at the end.
+     * Whitespaces (spaces, tabs, line breaks) are ignored to support usual dump formats.
+     *
+     * @param in  hexadecimal input.
+     * @param out decoded bytes.
+     */
+    public static void hexDecode(final InputStream in, final OutputStream out) {
+        final var buffer = new byte[BUFFER_SIZE];
+        final var decoded = new byte[BUFFER_SIZE / 2];
+        long position = 0;
+        int high = -1; // pending high nibble, can span two reads
+        try (in; out) {
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                int o = 0;
+                for (int i = 0; i < read; i++, position++) {
+                    final byte c = buffer[i];
+                    if (c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+                        continue;
+                    }
+                    if (!HexFormat.isHexDigit(c)) {
+                        throw new IllegalArgumentException("Invalid hexadecimal character at byte " + position + ": '" + (char) (c & 0xff) + "'");
+                    }
+                    if (high < 0) {
+                        high = HexFormat.fromHexDigit(c);
+                    } else {
+                        decoded[o++] = (byte) (high << 4 | HexFormat.fromHexDigit(c));
+                        high = -1;
+                    }
+                }
+                out.write(decoded, 0, o);
+            }
+            if (high >= 0) {
+                throw new IllegalArgumentException("Hexadecimal content has an odd number of digits");
+            }
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class CharSequenceInputStream extends InputStream {
+        private final CharSequence value;
+        private int index;
+
+        private CharSequenceInputStream(final CharSequence value) {
+            this.value = value;
+        }
+
+        @Override
+        public int read() {
+            return index < value.length() ? toByte(index++) : -1;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) {
+            Objects.checkFromIndexSize(off, len, b.length);
+            if (len == 0) {
+                return 0;
+            }
+            final int count = Math.min(len, value.length() - index);
+            if (count <= 0) {
+                return -1;
+            }
+            for (int i = 0; i < count; i++) {
+                b[off + i] = (byte) toByte(index++);
+            }
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return value.length() - index;
+        }
+
+        private int toByte(final int position) {
+            final char c = value.charAt(position);
+            if (c > 0x7f) { // else it would be silently truncated to another - potentially valid - byte
+                throw new IllegalArgumentException("Invalid non ASCII character at index " + position + ": '" + c + "'");
+            }
+            return c;
+        }
+    }
+
+    private static class HexInputStream extends InputStream {
+        private final CharSequence value;
+        private int index;
+
+        private HexInputStream(final CharSequence value) {
+            this.value = value;
+        }
+
+        @Override
+        public int read() {
+            if (index >= value.length()) {
+                return -1;
+            }
+            return nextByte();
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) {
+            Objects.checkFromIndexSize(off, len, b.length);
+            if (len == 0) {
+                return 0;
+            }
+            final int count = Math.min(len, (value.length() - index) / 2);
+            if (count <= 0) {
+                return -1;
+            }
+            for (int i = 0; i < count; i++) {
+                b[off + i] = (byte) nextByte();
+            }
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return (value.length() - index) / 2;
+        }
+
+        private int nextByte() {
+            final int high = HexFormat.fromHexDigit(value.charAt(index++));
+            return (high << 4) | HexFormat.fromHexDigit(value.charAt(index++));
+        }
+    }
+}
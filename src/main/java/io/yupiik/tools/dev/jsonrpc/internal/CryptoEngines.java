@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2022 - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.tools.dev.jsonrpc.internal;
+
+import jakarta.enterprise.context.ApplicationScoped;
+
+import javax.crypto.Mac;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.Provider;
+import java.security.Signature;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Pools {@link MessageDigest} engines per JVM algorithm name to avoid the provider lookup and engine allocation
+ * of {@code getInstance} on each call.
+ * <p>
+ * Pools are bounded queues (no thread affinity) so it works whatever the threading model is,
+ * when a pool is empty a new engine is created and when it is full the released engine is just dropped.
+ * <p>
+ * {@link Mac} and {@link Signature} engines are not pooled since they keep their key once initialized
+ * (secrets and private keys would stay reachable for the JVM lifetime), only their provider lookup is cached.
+ */
+@ApplicationScoped
+public class CryptoEngines {
+    private final int poolSize = Math.max(2, Runtime.getRuntime().availableProcessors() * 2);
+    private final Map<String, BlockingQueue<MessageDigest>> digests = new ConcurrentHashMap<>();
+    private final Map<String, Provider> macProviders = new ConcurrentHashMap<>();
+    private final Map<String, Provider> signatureProviders = new ConcurrentHashMap<>();
+
+    public Pooled<MessageDigest> messageDigest(final String algorithm) {
+        final var pool = digests.computeIfAbsent(algorithm, k -> new ArrayBlockingQueue<>(poolSize));
+        final var engine = pool.poll();
+        try {
+            return new Pooled<>(engine != null ? engine : MessageDigest.getInstance(algorithm), pool, MessageDigest::reset);
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param algorithm the JVM algorithm name.
+     * @return a new (not initialized) engine, it is never reused since it keeps the key it is initialized with.
+     */
+    public Mac mac(final String algorithm) {
+        try {
+            return Mac.getInstance(algorithm, macProviders.computeIfAbsent(algorithm, k -> {
+                try {
+                    return Mac.getInstance(k).getProvider();
+                } catch (final NoSuchAlgorithmException e) {
+                    throw new IllegalStateException(e);
+                }
+            }));
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param algorithm the JVM algorithm name.
+     * @return a new (not initialized) engine, it is never reused since it keeps the key it is initialized with.
+     */
+    public Signature signature(final String algorithm) {
+        try {
+            return Signature.getInstance(algorithm, signatureProviders.computeIfAbsent(algorithm, k -> {
+                try {
+                    return Signature.getInstance(k).getProvider();
+                } catch (final NoSuchAlgorithmException e) {
+                    throw new IllegalStateException(e);
+                }
+            }));
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static final class Pooled<T> implements AutoCloseable {
+        private final T engine;
+        private final BlockingQueue<T> pool;
+        private final Consumer<T> reset;
+        private boolean released;
+
+        private Pooled(final T engine, final BlockingQueue<T> pool, final Consumer<T> reset) {
+            this.engine = engine;
+            this.pool = pool;
+            this.reset = reset;
+        }
+
+        public T get() {
+            if (released) {
+                throw new IllegalStateException("Engine already released");
+            }
+            return engine;
+        }
+
+        @Override
+        public void close() {
+            if (released) {
+                return;
+            }
+            released = true;
+            reset.accept(engine);
+            pool.offer(engine);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2022 - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.tools.dev.jsonrpc.internal;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Hexadecimal (lowercase) codec working on ASCII bytes.
+ * <p>
+ * When the JVM is started with {@code --add-modules jdk.incubator.vector} the bulk of the inputs of at least
+ * {@value #VECTORIZATION_THRESHOLD} bytes is processed with the Vector API ({@link VectorHexCodec}),
+ * else (and for the tail of the input) a table driven scalar loop is used.
+ * Small inputs stay scalar since the vector code is very slow until it is compiled and a few vector iterations
+ * per call do not trigger the compilation quickly.
+ */
+public final class HexCodec {
+    private static final byte[] DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] VALUES = new byte[256];
+    private static final int VECTORIZATION_THRESHOLD = 1024;
+    private static final boolean VECTORIZED = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    static {
+        Arrays.fill(VALUES, (byte) -1);
+        for (int i = 0; i < 10; i++) {
+            VALUES['0' + i] = (byte) i;
+        }
+        for (int i = 0; i < 6; i++) {
+            VALUES['a' + i] = (byte) (10 + i);
+            VALUES['A' + i] = (byte) (10 + i);
+        }
+    }
+
+    private HexCodec() {
+        // no-op
+    }
+
+    /**
+     * @return {@code true} if the Vector API is used.
+     */
+    public static boolean isVectorized() {
+        return VECTORIZED;
+    }
+
+    public static String encode(final byte[] value) {
+        final var out = new byte[value.length * 2];
+        encode(value, 0, value.length, out, 0);
+        return new String(out, StandardCharsets.ISO_8859_1);
+    }
+
+    public static byte[] decode(final String value) {
+        if ((value.length() & 1) != 0) {
+            throw new IllegalArgumentException("Hexadecimal value length must be even, got " + value.length());
+        }
+        // non latin1 characters become '?' which is rejected as an invalid digit
+        final var ascii = value.getBytes(StandardCharsets.ISO_8859_1);
+        final var out = new byte[ascii.length / 2];
+        decode(ascii, 0, ascii.length, out, 0);
+        return out;
+    }
+
+    /**
+     * Encodes {@code in[from, to)} to {@code out} starting at {@code offset} (two bytes per input byte).
+     */
+    public static void encode(final byte[] in, final int from, final int to, final byte[] out, final int offset) {
+        int i = from;
+        int o = offset;
+        if (VECTORIZED && to - from >= VECTORIZATION_THRESHOLD) {
+            i = VectorHexCodec.encode(in, from, to, out, offset);
+            o += (i - from) * 2;
+        }
+        encodeScalar(in, i, to, out, o);
+    }
+
+    /**
+     * Decodes {@code in[from, to)} (an even number of ASCII hexadecimal digits) to {@code out} starting at {@code offset}.
+     *
+     * @throws IllegalArgumentException if a character is not an hexadecimal digit.
+     */
+    public static void decode(final byte[] in, final int from, final int to, final byte[] out, final int offset) {
+        int i = from;
+        int o = offset;
+        if (VECTORIZED && to - from >= 2 * VECTORIZATION_THRESHOLD) {
+            i = VectorHexCodec.decode(in, from, to, out, offset);
+            o += (i - from) / 2;
+        }
+        decodeScalar(in, i, to, out, o);
+    }
+
+    static void encodeScalar(final byte[] in, final int from, final int to, final byte[] out, final int offset) {
+        int o = offset;
+        for (int i = from; i < to; i++) {
+            final int b = in[i];
+            out[o++] = DIGITS[(b >> 4) & 0xf];
+            out[o++] = DIGITS[b & 0xf];
+        }
+    }
+
+    static void decodeScalar(final byte[] in, final int from, final int to, final byte[] out, final int offset) {
+        int o = offset;
+        for (int i = from; i < to; i += 2) {
+            final int high = VALUES[in[i] & 0xff];
+            final int low = VALUES[in[i + 1] & 0xff];
+            if ((high | low) < 0) {
+                final int invalid = high < 0 ? i : i + 1;
+                throw new IllegalArgumentException("Invalid hexadecimal character at index " + invalid + ": '" + (char) (in[invalid] & 0xff) + "'");
+            }
+            out[o++] = (byte) (high << 4 | low);
+        }
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2022 - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.tools.dev.jsonrpc.internal;
+
+import jakarta.json.stream.JsonParser;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+
+import static java.util.Comparator.comparing;
+
+/**
+ * JSON Canonicalization Scheme (RFC 8785) writer working on parser events.
+ * <p>
+ * Object members must be sorted by UTF-16 code units so an object can only be written once fully read:
+ * member values are serialized in a single spill buffer and objects only keep their keys and the offsets
+ * of the values in this buffer. Memory is therefore proportional to the biggest object with its nested values,
+ * i.e. to the whole document when the root is an object; only arrays which are not inside an object are streamed.
+ * Strings use the minimal escaping (lone surrogates are rejected) and numbers
+ * the ECMAScript (IEEE 754 double) serialization.
+ */
+public final class JsonCanonicalizer {
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final long MAX_SAFE_INTEGER = (1L << 53) - 1;
+
+    private JsonCanonicalizer() {
+        // no-op
+    }
+
+    /**
+     * @param parser the source (next value is read).
+     * @param out    where to write the canonical form.
+     * @throws IOException if the output fails.
+     */
+    public static void write(final JsonParser parser, final Appendable out) throws IOException {
+        if (!parser.hasNext()) {
+            throw new IllegalArgumentException("No JSON value");
+        }
+        value(parser, parser.next(), out, new StringBuilder());
+        if (parser.hasNext()) {
+            throw new IllegalArgumentException("Unexpected content after the JSON value");
+        }
+    }
+
+    // when out is the spill buffer the value is a (nested) member value
+    private static void value(final JsonParser parser, final JsonParser.Event event, final Appendable out,
+                              final StringBuilder spill) throws IOException {
+        switch (event) {
+            case START_ARRAY -> {
+                out.append('[');
+                var next = parser.next();
+                boolean first = true;
+                while (next != JsonParser.Event.END_ARRAY) {
+                    if (!first) {
+                        out.append(',');
+                    }
+                    first = false;
+                    value(parser, next, out, spill);
+                    next = parser.next();
+                }
+                out.append(']');
+            }
+            case START_OBJECT -> {
+                final int objectStart = spill.length();
+                final var members = new ArrayList<Member>();
+                var next = parser.next();
+                while (next != JsonParser.Event.END_OBJECT) {
+                    if (next != JsonParser.Event.KEY_NAME) {
+                        throw new IllegalStateException("Unexpected event: " + next);
+                    }
+                    final var key = parser.getString();
+                    final int start = spill.length();
+                    value(parser, parser.next(), spill, spill);
+                    members.add(new Member(key, start, spill.length()));
+                    next = parser.next();
+                }
+                members.sort(comparing(Member::key)); // String.compareTo compares UTF-16 code units as required
+
+                // nested objects are written after the member values then moved in place of them
+                final int valuesEnd = spill.length();
+                out.append('{');
+                boolean first = true;
+                for (int i = 0; i < members.size(); i++) {
+                    final var member = members.get(i);
+                    if (i + 1 < members.size() && members.get(i + 1).key().equals(member.key())) {
+                        // I-JSON (RFC 7493) forbids it, picking one would give the same output to different inputs
+                        throw new IllegalArgumentException("Duplicated member name '" + member.key() + "'");
+                    }
+                    if (!first) {
+                        out.append(',');
+                    }
+                    first = false;
+                    string(member.key(), out);
+                    out.append(':').append(spill, member.start(), member.end());
+                }
+                out.append('}');
+                if (out == spill) {
+                    spill.delete(objectStart, valuesEnd);
+                } else {
+                    spill.setLength(objectStart);
+                }
+            }
+            case VALUE_STRING -> string(parser.getString(), out);
+            case VALUE_NUMBER -> out.append(number(parser.getBigDecimal()));
+            case VALUE_TRUE -> out.append("true");
+            case VALUE_FALSE -> out.append("false");
+            case VALUE_NULL -> out.append("null");
+            default -> throw new IllegalStateException("Unexpected event: " + event);
+        }
+    }
+
+    private static void string(final String value, final Appendable out) throws IOException {
+        out.append('"');
+        int start = 0;
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    i++;
+                    continue;
+                }
+                throw new IllegalArgumentException("Lone surrogate at index " + i + " of a string");
+            }
+            if (c >= 0x20 && c != '"' && c != '\\') {
+                continue;
+            }
+            out.append(value, start, i);
+            start = i + 1;
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\b' -> out.append("\\b");
+                case '\f' -> out.append("\\f");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                default -> out.append("\\u00").append(HEX_DIGITS[c >> 4]).append(HEX_DIGITS[c & 0xf]);
+            }
+        }
+        out.append(value, start, value.length()).append('"');
+    }
+
+    /**
+     * @param value the number.
+     * @return the ECMAScript {@code Number.prototype.toString()} of the closest double.
+     */
+    public static String number(final BigDecimal value) {
+        final double d = value.doubleValue();
+        if (Double.isInfinite(d)) {
+            throw new IllegalArgumentException("Number not representable as an IEEE 754 double: " + value);
+        }
+        if (d == 0) {
+            return "0"; // includes -0
+        }
+        if (d == Math.rint(d) && Math.abs(d) <= MAX_SAFE_INTEGER) {
+            return Long.toString((long) d);
+        }
+
+        // shortest digits which round trip: the closest candidate (HALF_EVEN) can fall outside of the rounding interval
+        // when it is asymmetric (power of two) or on a tie, in such a case one of its neighbours can still round trip
+        final var exact = new BigDecimal(d);
+        BigDecimal shortest = null;
+        for (int precision = 1; precision <= 17 && shortest == null; precision++) {
+            final var closest = exact.round(new MathContext(precision, RoundingMode.HALF_EVEN));
+            final var ulp = closest.ulp();
+            for (final var candidate : new BigDecimal[]{closest, closest.subtract(ulp), closest.add(ulp)}) {
+                if (candidate.doubleValue() == d && (shortest == null || closer(candidate, shortest, exact))) {
+                    shortest = candidate;
+                }
+            }
+        }
+        if (shortest == null) { // 17 digits always round trip
+            throw new IllegalStateException("Can't format " + value);
+        }
+
+        shortest = shortest.stripTrailingZeros();
+        final var digits = shortest.unscaledValue().abs().toString();
+        final int k = digits.length();
+        final int n = k - shortest.scale(); // value = 0.digits * 10^n
+        final var out = new StringBuilder(k + 8);
+        if (d < 0) {
+            out.append('-');
+        }
+        if (k <= n && n <= 21) {
+            out.append(digits).append("0".repeat(n - k));
+        } else if (0 < n && n <= 21) {
+            out.append(digits, 0, n).append('.').append(digits, n, k);
+        } else if (-6 < n && n <= 0) {
+            out.append("0.").append("0".repeat(-n)).append(digits);
+        } else {
+            final int exponent = n - 1;
+            out.append(digits.charAt(0));
+            if (k > 1) {
+                out.append('.').append(digits, 1, k);
+            }
+            out.append('e').append(exponent < 0 ? '-' : '+').append(Math.abs(exponent));
+        }
+        return out.toString();
+    }
+
+    // ECMAScript picks the candidate closest to the value then the even one
+    private static boolean closer(final BigDecimal candidate, final BigDecimal current, final BigDecimal exact) {
+        final int comparison = candidate.subtract(exact).abs().compareTo(current.subtract(exact).abs());
+        return comparison < 0 || (comparison == 0 && !candidate.unscaledValue().testBit(0));
+    }
+
+    private record Member(String key, int start, int end) {
+    }
+}
@@ -0,0 +1,356 @@
+/*
+ * Copyright (c) 2022 - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.tools.dev.jsonrpc.internal;
+
+import jakarta.json.JsonArray;
+import jakarta.json.JsonNumber;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonPatchBuilder;
+import jakarta.json.JsonString;
+import jakarta.json.JsonValue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Computes JSON Patch (RFC 6902) operations between two JSON values.
+ * <p>
+ * Each subtree is hashed once (64 bits, bottom-up, object hashes do not depend on the key order and numbers
+ * are hashed by value) so different branches are detected without a deep comparison.
+ * Equal hashes are always confirmed by a structural comparison since collisions can be built on purpose.
+ * Arrays are aligned on element identifiers (equal elements share the same identifier, computed from the hashes
+ * and confirmed structurally): common prefix and suffix are trimmed then the remaining part
+ * uses a longest common subsequence computed in linear space (Myers' O((N+M)D) middle snake variant) so
+ * time depends on the number of differences and not on the array sizes, unmatched elements are
+ * diffed pairwise, removed or added.
+ */
+public final class JsonDiff {
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final Map<JsonValue, Long> hashes = new IdentityHashMap<>();
+    private final Map<JsonValue, Integer> ids = new IdentityHashMap<>();
+    private final JsonPatchBuilder patch;
+
+    private JsonDiff(final JsonPatchBuilder patch) {
+        this.patch = patch;
+    }
+
+    /**
+     * @param source  the original value.
+     * @param target  the expected value.
+     * @param builder the builder to add operations to.
+     * @return the builder.
+     */
+    public static JsonPatchBuilder diff(final JsonValue source, final JsonValue target, final JsonPatchBuilder builder) {
+        new JsonDiff(builder).diff("", source, target);
+        return builder;
+    }
+
+    private void diff(final String pointer, final JsonValue source, final JsonValue target) {
+        if (same(source, target)) {
+            return;
+        }
+        if (source.getValueType() == JsonValue.ValueType.OBJECT && target.getValueType() == JsonValue.ValueType.OBJECT) {
+            final var from = source.asJsonObject();
+            final var to = target.asJsonObject();
+            for (final var entry : from.entrySet()) {
+                final var path = pointer + '/' + escape(entry.getKey());
+                final var other = to.get(entry.getKey());
+                if (other == null) {
+                    patch.remove(path);
+                } else {
+                    diff(path, entry.getValue(), other);
+                }
+            }
+            for (final var entry : to.entrySet()) {
+                if (!from.containsKey(entry.getKey())) {
+                    patch.add(pointer + '/' + escape(entry.getKey()), entry.getValue());
+                }
+            }
+        } else if (source.getValueType() == JsonValue.ValueType.ARRAY && target.getValueType() == JsonValue.ValueType.ARRAY) {
+            diffArrays(pointer, source.asJsonArray(), target.asJsonArray());
+        } else {
+            patch.replace(pointer, target);
+        }
+    }
+
+    private void diffArrays(final String pointer, final JsonArray source, final JsonArray target) {
+        final var classes = new HashMap<Long, List<JsonValue>>();
+        final var from = ids(source, classes);
+        final var to = ids(target, classes);
+
+        int prefix = 0;
+        final int maxPrefix = Math.min(from.length, to.length);
+        while (prefix < maxPrefix && from[prefix] == to[prefix]) {
+            prefix++;
+        }
+        int suffix = 0;
+        final int maxSuffix = maxPrefix - prefix;
+        while (suffix < maxSuffix && from[from.length - 1 - suffix] == to[to.length - 1 - suffix]) {
+            suffix++;
+        }
+
+        final var matches = new ArrayList<int[]>();
+        lcs(from, prefix, from.length - suffix, to, prefix, to.length - suffix, matches);
+        matches.add(new int[]{from.length - suffix, to.length - suffix}); // sentinel flushing the trailing gap
+
+        int index = prefix; // position in the array being patched
+        int i = prefix;
+        int j = prefix;
+        for (final var match : matches) {
+            final int removed = match[0] - i;
+            final int added = match[1] - j;
+            final int common = Math.min(removed, added);
+            for (int k = 0; k < common; k++) {
+                diff(pointer + '/' + index, source.get(i++), target.get(j++));
+                index++;
+            }
+            for (int k = common; k < removed; k++) {
+                patch.remove(pointer + '/' + index);
+                i++;
+            }
+            for (int k = common; k < added; k++) {
+                patch.add(pointer + '/' + index, target.get(j++));
+                index++;
+            }
+            // skip the matched element
+            i++;
+            j++;
+            index++;
+        }
+    }
+
+    // Myers linear space variant: appends the matched (sourceIndex, targetIndex) pairs in order
+    private void lcs(final int[] a, final int aStart, final int aEnd,
+                     final int[] b, final int bStart, final int bEnd,
+                     final List<int[]> matches) {
+        int aFrom = aStart;
+        int bFrom = bStart;
+        while (aFrom < aEnd && bFrom < bEnd && a[aFrom] == b[bFrom]) {
+            matches.add(new int[]{aFrom++, bFrom++});
+        }
+        int aTo = aEnd;
+        int bTo = bEnd;
+        while (aTo > aFrom && bTo > bFrom && a[aTo - 1] == b[bTo - 1]) {
+            aTo--;
+            bTo--;
+        }
+
+        // once trimmed, a single remaining edit implies one side is empty so sub-problems always shrink
+        if (aFrom < aTo && bFrom < bTo) {
+            final var snake = middleSnake(a, aFrom, aTo, b, bFrom, bTo);
+            lcs(a, aFrom, snake[0], b, bFrom, snake[1], matches);
+            for (int x = snake[0], y = snake[1]; x < snake[2]; x++, y++) {
+                matches.add(new int[]{x, y});
+            }
+            lcs(a, snake[2], aTo, b, snake[3], bTo, matches);
+        }
+
+        for (int x = aTo, y = bTo; x < aEnd; x++, y++) {
+            matches.add(new int[]{x, y});
+        }
+    }
+
+    // returns {startX, startY, endX, endY} (absolute indices) of the snake in the middle of an optimal edit path
+    private static int[] middleSnake(final int[] a, final int aStart, final int aEnd,
+                                     final int[] b, final int bStart, final int bEnd) {
+        final int n = aEnd - aStart;
+        final int m = bEnd - bStart;
+        final int delta = n - m;
+        final boolean odd = (delta & 1) != 0;
+        final int max = (n + m + 1) / 2;
+        final int offset = max + 1;
+        final var forward = new int[2 * max + 3]; // furthest x on each diagonal k = x - y
+        final var backward = new int[2 * max + 3]; // same from the end, reversed coordinates
+        for (int d = 0; d <= max; d++) {
+            for (int k = -d; k <= d; k += 2) {
+                int x = k == -d || (k != d && forward[offset + k - 1] < forward[offset + k + 1]) ?
+                        forward[offset + k + 1] : forward[offset + k - 1] + 1;
+                int y = x - k;
+                final int startX = x;
+                final int startY = y;
+                while (x < n && y < m && a[aStart + x] == b[bStart + y]) {
+                    x++;
+                    y++;
+                }
+                forward[offset + k] = x;
+                final int reverseK = delta - k;
+                if (odd && reverseK >= -(d - 1) && reverseK <= d - 1 && x + backward[offset + reverseK] >= n) {
+                    return new int[]{aStart + startX, bStart + startY, aStart + x, bStart + y};
+                }
+            }
+            for (int k = -d; k <= d; k += 2) {
+                int x = k == -d || (k != d && backward[offset + k - 1] < backward[offset + k + 1]) ?
+                        backward[offset + k + 1] : backward[offset + k - 1] + 1;
+                int y = x - k;
+                final int startX = x;
+                final int startY = y;
+                while (x < n && y < m && a[aEnd - 1 - x] == b[bEnd - 1 - y]) {
+                    x++;
+                    y++;
+                }
+                backward[offset + k] = x;
+                final int forwardK = delta - k;
+                if (!odd && forwardK >= -d && forwardK <= d && x + forward[offset + forwardK] >= n) {
+                    return new int[]{aEnd - x, bEnd - y, aEnd - startX, bEnd - startY};
+                }
+            }
+        }
+        throw new IllegalStateException("No middle snake found"); // can't happen, max is the worst case distance
+    }
+
+    // assigns the same identifier to structurally equal elements, hashes only select the candidates to compare to
+    private int[] ids(final JsonArray array, final Map<Long, List<JsonValue>> classes) {
+        final var out = new int[array.size()];
+        for (int i = 0; i < out.length; i++) {
+            final var value = array.get(i);
+            final var candidates = classes.computeIfAbsent(hash(value), k -> new ArrayList<>(1));
+            int index = 0;
+            while (index < candidates.size() && !same(candidates.get(index), value)) {
+                index++;
+            }
+            if (index == candidates.size()) {
+                candidates.add(value);
+            }
+            out[i] = ids.computeIfAbsent(candidates.get(index), k -> ids.size());
+        }
+        return out;
+    }
+
+    private boolean same(final JsonValue a, final JsonValue b) {
+        if (a == b) {
+            return true;
+        }
+        if (a.getValueType() != b.getValueType() || hash(a) != hash(b)) {
+            return false;
+        }
+        return switch (a.getValueType()) {
+            case NULL, TRUE, FALSE -> true;
+            case STRING -> ((JsonString) a).getString().equals(((JsonString) b).getString());
+            case NUMBER -> ((JsonNumber) a).bigDecimalValue().compareTo(((JsonNumber) b).bigDecimalValue()) == 0;
+            case ARRAY -> {
+                final var left = a.asJsonArray();
+                final var right = b.asJsonArray();
+                if (left.size() != right.size()) {
+                    yield false;
+                }
+                for (int i = 0; i < left.size(); i++) {
+                    if (!same(left.get(i), right.get(i))) {
+                        yield false;
+                    }
+                }
+                yield true;
+            }
+            case OBJECT -> {
+                final var left = a.asJsonObject();
+                final var right = b.asJsonObject();
+                if (left.size() != right.size()) {
+                    yield false;
+                }
+                for (final var entry : left.entrySet()) {
+                    final var other = right.get(entry.getKey());
+                    if (other == null || !same(entry.getValue(), other)) {
+                        yield false;
+                    }
+                }
+                yield true;
+            }
+        };
+    }
+
+    private long hash(final JsonValue value) {
+        return switch (value.getValueType()) {
+            case NULL -> mix(1);
+            case TRUE -> mix(2);
+            case FALSE -> mix(3);
+            case STRING -> mix(hash(4, ((JsonString) value).getString()));
+            case NUMBER -> hash((JsonNumber) value);
+            // containers are memoized since they are hashed again when the diff goes down the tree
+            case ARRAY, OBJECT -> {
+                final var existing = hashes.get(value);
+                if (existing != null) {
+                    yield existing;
+                }
+                final long hash = value.getValueType() == JsonValue.ValueType.ARRAY ? hash(value.asJsonArray()) : hash(value.asJsonObject());
+                hashes.put(value, hash);
+                yield hash;
+            }
+        };
+    }
+
+    private long hash(final JsonArray array) {
+        long h = 6;
+        for (final var item : array) {
+            h = h * FNV_PRIME + hash(item);
+        }
+        return mix(h);
+    }
+
+    private long hash(final JsonObject object) {
+        long h = 0;
+        for (final var entry : object.entrySet()) { // sum is order independent
+            h += mix(hash(7, entry.getKey()) * FNV_PRIME + hash(entry.getValue()));
+        }
+        return mix(h ^ object.size());
+    }
+
+    // 1, 1.0 and 1e0 must have the same hash, integers use a fast path avoiding BigDecimal normalization
+    private static long hash(final JsonNumber number) {
+        if (number.isIntegral()) {
+            try {
+                return mix(5 * FNV_PRIME + number.longValueExact());
+            } catch (final ArithmeticException ae) {
+                // too big, use the decimal form
+            }
+        }
+        final var decimal = number.bigDecimalValue().stripTrailingZeros();
+        if (decimal.scale() <= 0) {
+            try {
+                return mix(5 * FNV_PRIME + decimal.longValueExact());
+            } catch (final ArithmeticException ae) {
+                // too big, use the decimal form
+            }
+        }
+        return mix(hash(5, decimal.toString()));
+    }
+
+    private static long hash(final long seed, final String value) {
+        long h = FNV_OFFSET ^ seed;
+        for (int i = 0; i < value.length(); i++) {
+            h = (h ^ value.charAt(i)) * FNV_PRIME;
+        }
+        return h;
+    }
+
+    // murmur3 finalizer
+    private static long mix(final long value) {
+        long h = value;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static String escape(final String token) {
+        return token.indexOf('~') < 0 && token.indexOf('/') < 0 ? token : token.replace("~", "~0").replace("/", "~1");
+    }
+}
@@ -0,0 +1,586 @@
+/*
+ * Copyright (c) 2022 - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.tools.dev.jsonrpc.internal;
+
+import jakarta.json.JsonArray;
+import jakarta.json.JsonNumber;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonString;
+import jakarta.json.JsonValue;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * JSON Schema (draft 7 / 2020-12 common subset) compiled once into a tree of validators.
+ * <p>
+ * Compilation resolves local references ({@code #}, {@code #/$defs/...}, {@code #/definitions/...}),
+ * precompiles patterns and keeps only the keywords present in the schema so validating an instance
+ * only costs the traversal of the instance.
+ * Supported keywords are: {@code type}, {@code enum}, {@code const}, {@code properties}, {@code patternProperties},
+ * {@code additionalProperties}, {@code required}, {@code minProperties}, {@code maxProperties}, {@code items},
+ * {@code prefixItems}, {@code additionalItems}, {@code minItems}, {@code maxItems}, {@code uniqueItems},
+ * {@code minLength}, {@code maxLength}, {@code pattern}, {@code minimum}, {@code maximum}, {@code exclusiveMinimum},
+ * {@code exclusiveMaximum}, {@code multipleOf}, {@code allOf}, {@code anyOf}, {@code oneOf}, {@code not},
+ * {@code if}/{@code then}/{@code else} and {@code $ref}. Other keywords are ignored.
+ * <p>
+ * Schema regexes ({@code pattern}, {@code patternProperties}) are evaluated through a {@link BudgetCharSequence}
+ * so a pathological pattern fails the validation with a {@link BudgetCharSequence.BudgetExceededException}.
+ */
+public final class JsonSchema {
+    private final Node root;
+
+    private JsonSchema(final Node root) {
+        this.root = root;
+    }
+
+    /**
+     * @param schema        the schema.
+     * @param regexTimeout  timeout in milliseconds of a single regex evaluation, ignored if not positive.
+     * @param regexMaxSteps maximum number of character reads of a single regex evaluation, ignored if not positive.
+     * @return the compiled schema.
+     */
+    public static JsonSchema compile(final JsonValue schema, final long regexTimeout, final long regexMaxSteps) {
+        final var compiler = new Compiler(schema, regexTimeout, regexMaxSteps);
+        final var root = compiler.compile(schema, "#");
+        compiler.checkInPlaceCycles();
+        return new JsonSchema(root);
+    }
+
+    /**
+     * @param instance the value to validate.
+     * @return the validation errors, empty if the instance is valid.
+     */
+    public List<Error> validate(final JsonValue instance) {
+        final var errors = new ArrayList<Error>();
+        root.validate(instance, "", errors);
+        return errors;
+    }
+
+    public record Error(String pointer, String message) {
+    }
+
+    @FunctionalInterface
+    private interface Validator {
+        void validate(JsonValue value, String pointer, List<Error> errors);
+    }
+
+    private static final class Node implements Validator {
+        private final String location;
+        private Validator[] validators = new Validator[0];
+
+        private Node(final String location) {
+            this.location = location;
+        }
+
+        @Override
+        public void validate(final JsonValue value, final String pointer, final List<Error> errors) {
+            for (final var validator : validators) {
+                validator.validate(value, pointer, errors);
+            }
+        }
+
+        private boolean isValid(final JsonValue value, final String pointer) {
+            final var errors = new ArrayList<Error>(0);
+            validate(value, pointer, errors);
+            return errors.isEmpty();
+        }
+    }
+
+    private static final class Compiler {
+        private final JsonValue document;
+        private final long regexTimeout;
+        private final long regexMaxSteps;
+        private final Map<String, Node> nodes = new HashMap<>(); // by location, enables recursive references
+        // schemas applied to the same instance ($ref, combinators), a cycle there never ends
+        private final Map<Node, List<Node>> inPlace = new HashMap<>();
+
+        private Compiler(final JsonValue document, final long regexTimeout, final long regexMaxSteps) {
+            this.document = document;
+            this.regexTimeout = regexTimeout;
+            this.regexMaxSteps = regexMaxSteps;
+        }
+
+        private Node compile(final JsonValue schema, final String location) {
+            final var existing = nodes.get(location);
+            if (existing != null) {
+                return existing;
+            }
+
+            final var node = new Node(location);
+            nodes.put(location, node);
+            if (schema.getValueType() == JsonValue.ValueType.TRUE) {
+                return node;
+            }
+            if (schema.getValueType() == JsonValue.ValueType.FALSE) {
+                node.validators = new Validator[]{(value, pointer, errors) -> errors.add(new Error(pointer, "No value allowed"))};
+                return node;
+            }
+            if (schema.getValueType() != JsonValue.ValueType.OBJECT) {
+                throw new IllegalArgumentException("Invalid schema at '" + location + "', expected an object or a boolean");
+            }
+
+            final var object = schema.asJsonObject();
+            final var validators = new ArrayList<Validator>();
+            if (object.containsKey("$ref")) {
+                final var ref = object.getString("$ref");
+                final var target = resolve(ref);
+                inPlace(node, target);
+                validators.add((value, pointer, errors) -> target.validate(value, pointer, errors));
+            }
+            if (object.containsKey("type")) {
+                validators.add(type(object.get("type")));
+            }
+            if (object.containsKey("enum")) {
+                final var values = object.getJsonArray("enum");
+                validators.add((value, pointer, errors) -> {
+                    for (final var candidate : values) {
+                        if (same(candidate, value)) {
+                            return;
+                        }
+                    }
+                    errors.add(new Error(pointer, "Value not in " + values));
+                });
+            }
+            if (object.containsKey("const")) {
+                final var expected = object.get("const");
+                validators.add((value, pointer, errors) -> {
+                    if (!same(expected, value)) {
+                        errors.add(new Error(pointer, "Expected " + expected));
+                    }
+                });
+            }
+            objectValidators(object, location, validators);
+            arrayValidators(object, location, validators);
+            stringValidators(object, validators);
+            numberValidators(object, location, validators);
+            combinators(object, location, node, validators);
+
+            node.validators = validators.toArray(Validator[]::new);
+            return node;
+        }
+
+        private Validator type(final JsonValue type) {
+            final var types = type.getValueType() == JsonValue.ValueType.ARRAY ?
+                    type.asJsonArray().getValuesAs(JsonString::getString) :
+                    List.of(((JsonString) type).getString());
+            for (final var name : types) {
+                if (!Set.of("null", "boolean", "object", "array", "number", "integer", "string").contains(name)) {
+                    throw new IllegalArgumentException("Unknown type '" + name + "'");
+                }
+            }
+            return (value, pointer, errors) -> {
+                final var actual = typeOf(value);
+                for (final var expected : types) {
+                    if (expected.equals(actual) || ("number".equals(expected) && "integer".equals(actual))) {
+                        return;
+                    }
+                }
+                errors.add(new Error(pointer, "Expected type " + String.join(" or ", types) + " but got " + actual));
+            };
+        }
+
+        private void objectValidators(final JsonObject object, final String location, final List<Validator> validators) {
+            final Map<String, Node> properties = new HashMap<>();
+            if (object.containsKey("properties")) {
+                for (final var property : object.getJsonObject("properties").entrySet()) {
+                    properties.put(property.getKey(), compile(property.getValue(), location + "/properties/" + escape(property.getKey())));
+                }
+            }
+            final Map<Pattern, Node> patternProperties = new HashMap<>();
+            if (object.containsKey("patternProperties")) {
+                for (final var property : object.getJsonObject("patternProperties").entrySet()) {
+                    patternProperties.put(
+                            Pattern.compile(property.getKey()),
+                            compile(property.getValue(), location + "/patternProperties/" + escape(property.getKey())));
+                }
+            }
+            final var additionalProperties = object.containsKey("additionalProperties") ?
+                    compile(object.get("additionalProperties"), location + "/additionalProperties") : null;
+            if (!properties.isEmpty() || !patternProperties.isEmpty() || additionalProperties != null) {
+                validators.add((value, pointer, errors) -> {
+                    if (value.getValueType() != JsonValue.ValueType.OBJECT) {
+                        return;
+                    }
+                    for (final var entry : value.asJsonObject().entrySet()) {
+                        final var child = pointer + '/' + escape(entry.getKey());
+                        boolean matched = false;
+                        final var property = properties.get(entry.getKey());
+                        if (property != null) {
+                            matched = true;
+                            property.validate(entry.getValue(), child, errors);
+                        }
+                        for (final var pattern : patternProperties.entrySet()) {
+                            if (find(pattern.getKey(), entry.getKey())) {
+                                matched = true;
+                                pattern.getValue().validate(entry.getValue(), child, errors);
+                            }
+                        }
+                        if (!matched && additionalProperties != null) {
+                            additionalProperties.validate(entry.getValue(), child, errors);
+                        }
+                    }
+                });
+            }
+            if (object.containsKey("required")) {
+                final var required = object.getJsonArray("required").getValuesAs(JsonString::getString);
+                validators.add((value, pointer, errors) -> {
+                    if (value.getValueType() != JsonValue.ValueType.OBJECT) {
+                        return;
+                    }
+                    final var instance = value.asJsonObject();
+                    for (final var name : required) {
+                        if (!instance.containsKey(name)) {
+                            errors.add(new Error(pointer, "Missing required property '" + name + "'"));
+                        }
+                    }
+                });
+            }
+            if (object.containsKey("minProperties")) {
+                final int min = object.getInt("minProperties");
+                validators.add((value, pointer, errors) -> {
+                    if (value.getValueType() == JsonValue.ValueType.OBJECT && value.asJsonObject().size() < min) {
+                        errors.add(new Error(pointer, "Expected at least " + min + " properties"));
+                    }
+                });
+            }
+            if (object.containsKey("maxProperties")) {
+                final int max = object.getInt("maxProperties");
+                validators.add((value, pointer, errors) -> {
+                    if (value.getValueType() == JsonValue.ValueType.OBJECT && value.asJsonObject().size() > max) {
+                        errors.add(new Error(pointer, "Expected at most " + max + " properties"));
+                    }
+                });
+            }
+        }
+
+        private void arrayValidators(final JsonObject object, final String location, final List<Validator> validators) {
+            final List<Node> prefixItems;
+            final Node items;
+            if (object.containsKey("prefixItems")) { // 2020-12
+                prefixItems = compileAll(object.getJsonArray("prefixItems"), location + "/prefixItems");
+                items = object.containsKey("items") ? compile(object.get("items"), location + "/items") : null;
+            } else if (object.containsKey("items") && object.get("items").getValueType() == JsonValue.ValueType.ARRAY) { // draft 7 tuples
+                prefixItems = compileAll(object.getJsonArray("items"), location + "/items");
+                items = object.containsKey("additionalItems") ? compile(object.get("additionalItems"), location + "/additionalItems") : null;
+            } else {
+                prefixItems = List.of();
+                items = object.containsKey("items") ? compile(object.get("items"), location + "/items") : null;
+            }
+            if (!prefixItems.isEmpty() || items != null) {
+                validators.add((value, pointer, errors) -> {
+                    if (value.getValueType() != JsonValue.ValueType.ARRAY) {
+                        return;
+                    }
+                    final var array = value.asJsonArray();
+                    for (int i = 0; i < array.size(); i++) {
+                        final var validator = i < prefixItems.size() ? prefixItems.get(i) : items;
+                        if (validator == null) {
+                            break;
+                        }
+                        validator.validate(array.get(i), pointer + '/' + i, errors);
+                    }
+                });
+            }
+            if (object.containsKey("minItems")) {
+                final int min = object.getInt("minItems");
+                validators.add((value, pointer, errors) -> {
+                    if (value.getValueType() == JsonValue.ValueType.ARRAY && value.asJsonArray().size() < min) {
+                        errors.add(new Error(pointer, "Expected at least " + min + " items"));
+                    }
+                });
+            }
+            if (object.containsKey("maxItems")) {
+                final int max = object.getInt("maxItems");
+                validators.add((value, pointer, errors) -> {
+                    if (value.getValueType() == JsonValue.ValueType.ARRAY && value.asJsonArray().size() > max) {
+                        errors.add(new Error(pointer, "Expected at most " + max + " items"));
+                    }
+                });
+            }
+            if (object.getBoolean("uniqueItems", false)) {
+                validators.add((value, pointer, errors) -> {
+                    if (value.getValueType() != JsonValue.ValueType.ARRAY) {
+                        return;
+                    }
+                    final var array = value.asJsonArray();
+                    for (int i = 1; i < array.size(); i++) {
+                        for (int j = 0; j < i; j++) {
+                            if (same(array.get(i), array.get(j))) {
+                                errors.add(new Error(pointer + '/' + i, "Duplicated item (same as index " + j + ")"));
+                                break;
+                            }
+                        }
+                    }
+                });
+            }
+        }
+
+        private void stringValidators(final JsonObject object, final List<Validator> validators) {
+            if (object.containsKey("minLength")) {
+                final int min = object.getInt("minLength");
+                validators.add((value, pointer, errors) -> {
+                    if (value.getValueType() == JsonValue.ValueType.STRING && length(value) < min) {
+                        errors.add(new Error(pointer, "Expected at least " + min + " characters"));
+                    }
+                });
+            }
+            if (object.containsKey("maxLength")) {
+                final int max = object.getInt("maxLength");
+                validators.add((value, pointer, errors) -> {
+                    if (value.getValueType() == JsonValue.ValueType.STRING && length(value) > max) {
+                        errors.add(new Error(pointer, "Expected at most " + max + " characters"));
+                    }
+                });
+            }
+            if (object.containsKey("pattern")) {
+                final var pattern = Pattern.compile(object.getString("pattern"));
+                validators.add((value, pointer, errors) -> {
+                    if (value.getValueType() == JsonValue.ValueType.STRING && !find(pattern, ((JsonString) value).getString())) {
+                        errors.add(new Error(pointer, "Value does not match '" + pattern.pattern() + "'"));
+                    }
+                });
+            }
+        }
+
+        private void numberValidators(final JsonObject object, final String location, final List<Validator> validators) {
+            if (object.get("multipleOf") instanceof JsonNumber multipleOf && multipleOf.bigDecimalValue().signum() <= 0) {
+                throw new IllegalArgumentException("Invalid schema at '" + location + "', multipleOf must be strictly positive");
+            }
+            addBound(object, "minimum", validators, (value, bound) -> value.compareTo(bound) >= 0, "Expected a value >= ");
+            addBound(object, "maximum", validators, (value, bound) -> value.compareTo(bound) <= 0, "Expected a value <= ");
+            addBound(object, "exclusiveMinimum", validators, (value, bound) -> value.compareTo(bound) > 0, "Expected a value > ");
+            addBound(object, "exclusiveMaximum", validators, (value, bound) -> value.compareTo(bound) < 0, "Expected a value < ");
+            addBound(object, "multipleOf", validators, (value, bound) -> value.remainder(bound).signum() == 0, "Expected a multiple of ");
+        }
+
+        private boolean find(final Pattern pattern, final String value) {
+            return pattern.matcher(new BudgetCharSequence(value, regexTimeout, regexMaxSteps)).find();
+        }
+
+        private void addBound(final JsonObject object, final String keyword, final List<Validator> validators,
+                              final BoundCheck check, final String message) {
+            final var bound = object.get(keyword);
+            if (bound == null || bound.getValueType() != JsonValue.ValueType.NUMBER) { // draft 4 boolean exclusive* are ignored
+                return;
+            }
+            final var decimal = ((JsonNumber) bound).bigDecimalValue();
+            validators.add((value, pointer, errors) -> {
+                if (value.getValueType() == JsonValue.ValueType.NUMBER && !check.test(((JsonNumber) value).bigDecimalValue(), decimal)) {
+                    errors.add(new Error(pointer, message + decimal));
+                }
+            });
+        }
+
+        private void combinators(final JsonObject object, final String location, final Node node, final List<Validator> validators) {
+            if (object.containsKey("allOf")) {
+                final var schemas = compileAll(object.getJsonArray("allOf"), location + "/allOf");
+                schemas.forEach(it -> inPlace(node, it));
+                validators.addAll(schemas);
+            }
+            if (object.containsKey("anyOf")) {
+                final var schemas = compileAll(object.getJsonArray("anyOf"), location + "/anyOf");
+                schemas.forEach(it -> inPlace(node, it));
+                validators.add((value, pointer, errors) -> {
+                    for (final var schema : schemas) {
+                        if (schema.isValid(value, pointer)) {
+                            return;
+                        }
+                    }
+                    errors.add(new Error(pointer, "Value does not match any of the anyOf schemas"));
+                });
+            }
+            if (object.containsKey("oneOf")) {
+                final var schemas = compileAll(object.getJsonArray("oneOf"), location + "/oneOf");
+                schemas.forEach(it -> inPlace(node, it));
+                validators.add((value, pointer, errors) -> {
+                    int matching = 0;
+                    for (final var schema : schemas) {
+                        if (schema.isValid(value, pointer) && ++matching > 1) {
+                            break;
+                        }
+                    }
+                    if (matching != 1) {
+                        errors.add(new Error(pointer, "Value matches " + matching + " oneOf schemas instead of exactly one"));
+                    }
+                });
+            }
+            if (object.containsKey("not")) {
+                final var schema = compile(object.get("not"), location + "/not");
+                inPlace(node, schema);
+                validators.add((value, pointer, errors) -> {
+                    if (schema.isValid(value, pointer)) {
+                        errors.add(new Error(pointer, "Value must not match the not schema"));
+                    }
+                });
+            }
+            if (object.containsKey("if")) {
+                final var condition = compile(object.get("if"), location + "/if");
+                final var then = object.containsKey("then") ? compile(object.get("then"), location + "/then") : null;
+                final var otherwise = object.containsKey("else") ? compile(object.get("else"), location + "/else") : null;
+                for (final var schema : new Node[]{condition, then, otherwise}) {
+                    if (schema != null) {
+                        inPlace(node, schema);
+                    }
+                }
+                validators.add((value, pointer, errors) -> {
+                    final var branch = condition.isValid(value, pointer) ? then : otherwise;
+                    if (branch != null) {
+                        branch.validate(value, pointer, errors);
+                    }
+                });
+            }
+        }
+
+        private List<Node> compileAll(final JsonArray schemas, final String location) {
+            final var out = new ArrayList<Node>(schemas.size());
+            for (int i = 0; i < schemas.size(); i++) {
+                out.add(compile(schemas.get(i), location + '/' + i));
+            }
+            return out;
+        }
+
+        private void inPlace(final Node from, final Node to) {
+            inPlace.computeIfAbsent(from, k -> new ArrayList<>()).add(to);
+        }
+
+        // references are resolved lazily at validation time so a loop not consuming the instance must be rejected here
+        private void checkInPlaceCycles() {
+            final var done = new HashSet<Node>();
+            final var visiting = new HashSet<Node>();
+            for (final var node : inPlace.keySet()) {
+                visit(node, visiting, done);
+            }
+        }
+
+        private void visit(final Node node, final Set<Node> visiting, final Set<Node> done) {
+            if (done.contains(node)) {
+                return;
+            }
+            if (!visiting.add(node)) {
+                throw new IllegalArgumentException("Invalid schema, infinite loop through '" + node.location + "' (reference cycle not descending in the instance)");
+            }
+            for (final var next : inPlace.getOrDefault(node, List.of())) {
+                visit(next, visiting, done);
+            }
+            visiting.remove(node);
+            done.add(node);
+        }
+
+        private Node resolve(final String ref) {
+            if (!ref.startsWith("#")) {
+                throw new IllegalArgumentException("Only local references are supported: '" + ref + "'");
+            }
+            var current = document;
+            for (final var token : JsonStreams.parsePointer(ref.substring(1))) {
+                current = switch (current.getValueType()) {
+                    case OBJECT -> current.asJsonObject().get(token);
+                    case ARRAY -> {
+                        try {
+                            final var index = Integer.parseInt(token);
+                            yield index >= 0 && index < current.asJsonArray().size() ? current.asJsonArray().get(index) : null;
+                        } catch (final NumberFormatException nfe) {
+                            yield null;
+                        }
+                    }
+                    default -> null;
+                };
+                if (current == null) {
+                    throw new IllegalArgumentException("Unresolvable reference '" + ref + "'");
+                }
+            }
+            // location is normalized to "#" + pointer so references share the node compiled for the same location
+            return compile(current, ref);
+        }
+    }
+
+    @FunctionalInterface
+    private interface BoundCheck {
+        boolean test(BigDecimal value, BigDecimal bound);
+    }
+
+    private static String typeOf(final JsonValue value) {
+        return switch (value.getValueType()) {
+            case NULL -> "null";
+            case TRUE, FALSE -> "boolean";
+            case OBJECT -> "object";
+            case ARRAY -> "array";
+            case STRING -> "string";
+            case NUMBER -> isInteger((JsonNumber) value) ? "integer" : "number";
+        };
+    }
+
+    private static boolean isInteger(final JsonNumber number) {
+        if (number.isIntegral()) {
+            return true;
+        }
+        final var decimal = number.bigDecimalValue();
+        return decimal.signum() == 0 || decimal.scale() <= 0 || decimal.stripTrailingZeros().scale() <= 0;
+    }
+
+    private static int length(final JsonValue value) {
+        final var string = ((JsonString) value).getString();
+        return string.codePointCount(0, string.length());
+    }
+
+    // JSON equality, numbers are compared by value (1 == 1.0)
+    private static boolean same(final JsonValue a, final JsonValue b) {
+        if (a.getValueType() != b.getValueType()) {
+            return false;
+        }
+        return switch (a.getValueType()) {
+            case NUMBER -> ((JsonNumber) a).bigDecimalValue().compareTo(((JsonNumber) b).bigDecimalValue()) == 0;
+            case ARRAY -> {
+                final var left = a.asJsonArray();
+                final var right = b.asJsonArray();
+                if (left.size() != right.size()) {
+                    yield false;
+                }
+                for (int i = 0; i < left.size(); i++) {
+                    if (!same(left.get(i), right.get(i))) {
+                        yield false;
+                    }
+                }
+                yield true;
+            }
+            case OBJECT -> {
+                final var left = a.asJsonObject();
+                final var right = b.asJsonObject();
+                if (left.size() != right.size()) {
+                    yield false;
+                }
+                for (final var entry : left.entrySet()) {
+                    final var other = right.get(entry.getKey());
+                    if (other == null || !same(entry.getValue(), other)) {
+                        yield false;
+                    }
+                }
+                yield true;
+            }
+            default -> a.equals(b);
+        };
+    }
+
+    private static String escape(final String token) {
+        return token.indexOf('~') < 0 && token.indexOf('/') < 0 ? token : token.replace("~", "~0").replace("/", "~1");
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2022 - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.tools.dev.jsonrpc.internal;
+
+import jakarta.json.JsonValue;
+import jakarta.json.stream.JsonGenerator;
+import jakarta.json.stream.JsonParser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Helpers working on JSON-P events to avoid materializing JSON trees.
+ */
+public final class JsonStreams {
+    private JsonStreams() {
+        // no-op
+    }
+
+    /**
+     * Pipes all the parser events to the generator, memory usage only depends on the nesting and the biggest scalar.
+     *
+     * @param parser    the source.
+     * @param generator the target (not closed).
+     */
+    public static void copy(final JsonParser parser, final JsonGenerator generator) {
+        String key = null; // named generator methods are used instead of writeKey which breaks pretty printing indentation
+        while (parser.hasNext()) {
+            final var event = parser.next();
+            if (event == JsonParser.Event.KEY_NAME) {
+                key = parser.getString();
+                continue;
+            }
+            if (key == null) {
+                switch (event) {
+                    case START_OBJECT -> generator.writeStartObject();
+                    case START_ARRAY -> generator.writeStartArray();
+                    case END_OBJECT, END_ARRAY -> generator.writeEnd();
+                    case VALUE_STRING -> generator.write(parser.getString());
+                    case VALUE_NUMBER -> generator.write(parser.getValue()); // keeps the number as parsed (no double conversion)
+                    case VALUE_TRUE -> generator.write(true);
+                    case VALUE_FALSE -> generator.write(false);
+                    case VALUE_NULL -> generator.writeNull();
+                    default -> throw new IllegalStateException("Unexpected event: " + event);
+                }
+            } else {
+                switch (event) {
+                    case START_OBJECT -> generator.writeStartObject(key);
+                    case START_ARRAY -> generator.writeStartArray(key);
+                    case VALUE_STRING -> generator.write(key, parser.getString());
+                    case VALUE_NUMBER -> generator.write(key, parser.getValue());
+                    case VALUE_TRUE -> generator.write(key, true);
+                    case VALUE_FALSE -> generator.write(key, false);
+                    case VALUE_NULL -> generator.writeNull(key);
+                    default -> throw new IllegalStateException("Unexpected event: " + event);
+                }
+                key = null;
+            }
+        }
+    }
+
+    /**
+     * Evaluates a path (list of JSON Pointer reference tokens) on a parser positioned before the document.
+     * Subtrees which can't match are skipped and parsing stops as soon as the value is found,
+     * only the matched value is materialized.
+     *
+     * @param parser the parser to read.
+     * @param tokens the unescaped path tokens.
+     * @return the matched value if any.
+     */
+    public static Optional<JsonValue> find(final JsonParser parser, final List<String> tokens) {
+        if (!parser.hasNext()) {
+            return Optional.empty();
+        }
+        var event = parser.next();
+        for (final var token : tokens) {
+            switch (event) {
+                case START_OBJECT -> {
+                    event = null;
+                    while (event == null) {
+                        if (parser.next() == JsonParser.Event.END_OBJECT) {
+                            return Optional.empty();
+                        }
+                        final var matches = token.equals(parser.getString()); // KEY_NAME
+                        final var valueEvent = parser.next();
+                        if (matches) {
+                            event = valueEvent;
+                        } else {
+                            skip(parser, valueEvent);
+                        }
+                    }
+                }
+                case START_ARRAY -> {
+                    final int index = toIndex(token);
+                    if (index < 0) {
+                        return Optional.empty();
+                    }
+                    for (int i = 0; ; i++) {
+                        final var valueEvent = parser.next();
+                        if (valueEvent == JsonParser.Event.END_ARRAY) {
+                            return Optional.empty();
+                        }
+                        if (i == index) {
+                            event = valueEvent;
+                            break;
+                        }
+                        skip(parser, valueEvent);
+                    }
+                }
+                default -> {
+                    return Optional.empty(); // scalars have no child
+                }
+            }
+        }
+        return Optional.of(parser.getValue());
+    }
+
+    /**
+     * @param pointer a JSON Pointer (RFC 6901).
+     * @return the unescaped reference tokens.
+     */
+    public static List<String> parsePointer(final String pointer) {
+        if (pointer.isEmpty()) {
+            return List.of();
+        }
+        if (pointer.charAt(0) != '/') {
+            throw new IllegalArgumentException("Invalid JSON Pointer, it must start with '/': '" + pointer + "'");
+        }
+        final var tokens = new ArrayList<String>();
+        int start = 1;
+        while (true) {
+            final int end = pointer.indexOf('/', start);
+            final var token = end < 0 ? pointer.substring(start) : pointer.substring(start, end);
+            tokens.add(token.indexOf('~') < 0 ? token : token.replace("~1", "/").replace("~0", "~"));
+            if (end < 0) {
+                return tokens;
+            }
+            start = end + 1;
+        }
+    }
+
+    /**
+     * Parses a JSONPath subset: {@code $}, {@code .name}, {@code ['name']} and {@code [index]} segments
+     * (no wildcard, recursive descent nor filter since it would not be a single value lookup).
+     *
+     * @param path the JSONPath.
+     * @return the reference tokens.
+     */
+    public static List<String> parseJsonPath(final String path) {
+        if (path.isEmpty() || path.charAt(0) != '$') {
+            throw new IllegalArgumentException("Invalid JSONPath, it must start with '$': '" + path + "'");
+        }
+        final var tokens = new ArrayList<String>();
+        int i = 1;
+        while (i < path.length()) {
+            final char c = path.charAt(i);
+            if (c == '.') {
+                int end = i + 1;
+                while (end < path.length() && path.charAt(end) != '.' && path.charAt(end) != '[') {
+                    end++;
+                }
+                final var name = path.substring(i + 1, end);
+                if (name.isEmpty() || "*".equals(name)) {
+                    throw new IllegalArgumentException("Unsupported JSONPath segment at index " + i + " in '" + path + "'");
+                }
+                tokens.add(name);
+                i = end;
+            } else if (c == '[') {
+                final int end = path.indexOf(']', i);
+                if (end < 0) {
+                    throw new IllegalArgumentException("Unclosed '[' at index " + i + " in '" + path + "'");
+                }
+                final var segment = path.substring(i + 1, end).strip();
+                if (segment.length() >= 2 && (segment.charAt(0) == '\'' || segment.charAt(0) == '"') &&
+                        segment.charAt(segment.length() - 1) == segment.charAt(0)) {
+                    tokens.add(segment.substring(1, segment.length() - 1));
+                } else if (!segment.isEmpty() && segment.chars().allMatch(Character::isDigit)) {
+                    tokens.add(segment);
+                } else {
+                    throw new IllegalArgumentException("Unsupported JSONPath segment '" + segment + "' in '" + path + "'");
+                }
+                i = end + 1;
+            } else {
+                throw new IllegalArgumentException("Unexpected character '" + c + "' at index " + i + " in '" + path + "'");
+            }
+        }
+        return tokens;
+    }
+
+    private static int toIndex(final String token) {
+        if (token.isEmpty() || token.length() > 9 || (token.length() > 1 && token.charAt(0) == '0')) {
+            return -1;
+        }
+        for (int i = 0; i < token.length(); i++) {
+            if (!Character.isDigit(token.charAt(i))) {
+                return -1;
+            }
+        }
+        return Integer.parseInt(token);
+    }
+
+    private static void skip(final JsonParser parser, final JsonParser.Event event) {
+        switch (event) {
+            case START_OBJECT -> parser.skipObject();
+            case START_ARRAY -> parser.skipArray();
+            default -> {
+                // scalar already consumed
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2022 - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.tools.dev.jsonrpc.internal;
+
+import jakarta.json.JsonObject;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.math.BigInteger;
+import java.security.AlgorithmParameters;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyFactory;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.ECParameterSpec;
+import java.security.spec.ECPoint;
+import java.security.spec.ECPublicKeySpec;
+import java.security.spec.EdECPoint;
+import java.security.spec.EdECPublicKeySpec;
+import java.security.spec.NamedParameterSpec;
+import java.security.spec.RSAPublicKeySpec;
+import java.util.Base64;
+
+/**
+ * Converts a JSON Web Key (RFC 7517) to a JVM key, supports RSA, EC, OKP (EdDSA) and oct (HMAC) keys.
+ */
+public final class Jwk {
+    private Jwk() {
+        // no-op
+    }
+
+    public static Key toKey(final JsonObject jwk) {
+        final var kty = jwk.getString("kty", "");
+        try {
+            switch (kty) {
+                case "RSA":
+                    return KeyFactory.getInstance("RSA").generatePublic(new RSAPublicKeySpec(
+                            unsigned(jwk, "n"), unsigned(jwk, "e")));
+                case "EC": {
+                    final var parameters = AlgorithmParameters.getInstance("EC");
+                    parameters.init(new ECGenParameterSpec(switch (jwk.getString("crv", "")) {
+                        case "P-256" -> "secp256r1";
+                        case "P-384" -> "secp384r1";
+                        case "P-521" -> "secp521r1";
+                        default -> throw new IllegalArgumentException("Unsupported curve: " + jwk.getString("crv", null));
+                    }));
+                    return KeyFactory.getInstance("EC").generatePublic(new ECPublicKeySpec(
+                            new ECPoint(unsigned(jwk, "x"), unsigned(jwk, "y")),
+                            parameters.getParameterSpec(ECParameterSpec.class)));
+                }
+                case "OKP": {
+                    final var crv = jwk.getString("crv", "");
+                    if (!"Ed25519".equals(crv) && !"Ed448".equals(crv)) {
+                        throw new IllegalArgumentException("Unsupported curve: " + crv);
+                    }
+                    // x is the little endian encoding of y with the x parity in the most significant bit
+                    final var x = bytes(jwk, "x");
+                    final boolean xOdd = (x[x.length - 1] & 0x80) != 0;
+                    x[x.length - 1] &= 0x7F;
+                    for (int i = 0, j = x.length - 1; i < j; i++, j--) {
+                        final byte tmp = x[i];
+                        x[i] = x[j];
+                        x[j] = tmp;
+                    }
+                    return KeyFactory.getInstance("EdDSA").generatePublic(new EdECPublicKeySpec(
+                            new NamedParameterSpec(crv), new EdECPoint(xOdd, new BigInteger(1, x))));
+                }
+                case "oct":
+                    return new SecretKeySpec(bytes(jwk, "k"), "HMAC");
+                default:
+                    throw new IllegalArgumentException("Unsupported key type: '" + kty + "'");
+            }
+        } catch (final GeneralSecurityException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    private static BigInteger unsigned(final JsonObject jwk, final String name) {
+        return new BigInteger(1, bytes(jwk, name));
+    }
+
+    private static byte[] bytes(final JsonObject jwk, final String name) {
+        final var value = jwk.getString(name, null);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing '" + name + "' in JWK");
+        }
+        return Base64.getUrlDecoder().decode(value);
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2022 - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.tools.dev.jsonrpc.internal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Splits a file in line aligned byte ranges which can be processed independently (in parallel),
+ * each range being read through a memory mapped buffer.
+ */
+public final class LineRanges {
+    private LineRanges() {
+        // no-op
+    }
+
+    /**
+     * @param channel   the file.
+     * @param rangeSize the target size of a range, ranges are extended to the end of their last line.
+     * @return the ranges covering the whole file, in order.
+     * @throws IOException if the file can't be read.
+     */
+    public static List<Range> split(final FileChannel channel, final long rangeSize) throws IOException {
+        final long size = channel.size();
+        final var ranges = new ArrayList<Range>((int) Math.min(Integer.MAX_VALUE, size / rangeSize + 1));
+        final var buffer = ByteBuffer.allocate(8 * 1024);
+        long start = 0;
+        while (start < size) {
+            long end = Math.min(size, start + rangeSize);
+            if (end < size) { // move to the byte following the next end of line
+                long position = end - 1;
+                boolean found = false;
+                while (!found && position < size) {
+                    buffer.clear();
+                    final int read = channel.read(buffer, position);
+                    if (read <= 0) {
+                        break;
+                    }
+                    for (int i = 0; i < read; i++) {
+                        if (buffer.get(i) == '\n') {
+                            position += i;
+                            found = true;
+                            break;
+                        }
+                    }
+                    if (!found) {
+                        position += read;
+                    }
+                }
+                end = found ? position + 1 : size;
+            }
+            ranges.add(new Range(start, end));
+            start = end;
+        }
+        return ranges;
+    }
+
+    /**
+     * Decodes (UTF-8) and visits the lines of a range, line terminators ({@code \n} or {@code \r\n}) are stripped.
+     *
+     * @param channel  the file.
+     * @param range    the range to read.
+     * @param consumer the line callback.
+     * @throws IOException if the file can't be mapped.
+     */
+    public static void forEachLine(final FileChannel channel, final Range range, final Consumer<String> consumer) throws IOException {
+        final var mapped = channel.map(FileChannel.MapMode.READ_ONLY, range.start(), range.end() - range.start());
+        var line = new byte[256];
+        int length = 0;
+        while (mapped.hasRemaining()) {
+            final byte b = mapped.get();
+            if (b == '\n') {
+                consumer.accept(decode(line, length));
+                length = 0;
+                continue;
+            }
+            if (length == line.length) {
+                line = Arrays.copyOf(line, line.length * 2);
+            }
+            line[length++] = b;
+        }
+        if (length > 0) { // last line without end of line
+            consumer.accept(decode(line, length));
+        }
+    }
+
+    private static String decode(final byte[] line, final int length) {
+        final int end = length > 0 && line[length - 1] == '\r' ? length - 1 : length;
+        return new String(line, 0, end, StandardCharsets.UTF_8);
+    }
+
+    public record Range(long start, long end) {
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2022 - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.tools.dev.jsonrpc.internal;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Small thread safe cache evicting (approximately) the least recently used entries.
+ * <p>
+ * Reads are lock free: entries live in a {@link ConcurrentHashMap} and a read only flags the entry as referenced.
+ * Eviction uses the CLOCK (second chance) algorithm: entries are queued in insertion order and,
+ * when the cache is full, the head is evicted unless it was referenced since it was last visited in which case
+ * it is requeued with its flag cleared. Only insertions (misses) take a lock.
+ * <p>
+ * Values are computed outside of the lock so a slow computation does not block other callers,
+ * if two threads compute the same key concurrently the first stored value wins.
+ *
+ * @param <K> key type.
+ * @param <V> value type.
+ */
+public final class LruCache<K, V> {
+    private final int maxSize;
+    private final ConcurrentHashMap<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final Queue<K> clock = new ArrayDeque<>(); // guarded by itself
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public LruCache(final int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Invalid cache size: " + maxSize);
+        }
+        this.maxSize = maxSize;
+    }
+
+    public V computeIfAbsent(final K key, final Function<K, V> factory) {
+        final var existing = entries.get(key);
+        if (existing != null) {
+            hits.increment();
+            if (!existing.referenced) { // avoids a write (cache line invalidation) on hot entries
+                existing.referenced = true;
+            }
+            return existing.value;
+        }
+
+        misses.increment();
+        final var value = factory.apply(key);
+        synchronized (clock) {
+            final var current = entries.putIfAbsent(key, new Entry<>(value));
+            if (current != null) {
+                return current.value;
+            }
+            clock.add(key);
+            while (clock.size() > maxSize) {
+                final var candidate = clock.remove();
+                final var entry = entries.get(candidate);
+                if (entry.referenced) {
+                    entry.referenced = false;
+                    clock.add(candidate);
+                } else {
+                    entries.remove(candidate);
+                }
+            }
+        }
+        return value;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), size());
+    }
+
+    public record Stats(long hits, long misses, int size) {
+    }
+
+    private static final class Entry<V> {
+        private final V value;
+        private volatile boolean referenced;
+
+        private Entry(final V value) {
+            this.value = value;
+        }
+    }
+}
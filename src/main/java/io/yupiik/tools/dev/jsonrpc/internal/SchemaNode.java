@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2022 - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.tools.dev.jsonrpc.internal;
+
+import jakarta.json.JsonObject;
+import jakarta.json.spi.JsonProvider;
+import jakarta.json.stream.JsonParser;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Accumulates the shape of the JSON values it sees to infer a JSON Schema.
+ * <p>
+ * Values are consumed from parser events (no JSON tree is built) and nodes can be merged so samples
+ * can be processed by chunks in parallel, memory only depends on the schema (and enum candidates).
+ */
+public final class SchemaNode {
+    private static final int NULL = 1;
+    private static final int BOOLEAN = 1 << 1;
+    private static final int INTEGER = 1 << 2;
+    private static final int NUMBER = 1 << 3;
+    private static final int STRING = 1 << 4;
+    private static final int OBJECT = 1 << 5;
+    private static final int ARRAY = 1 << 6;
+
+    private final int enumLimit;
+    private int types;
+    private long count;
+    private long objects;
+    private long strings;
+    private Set<String> enumCandidates = new LinkedHashSet<>(); // null when there are too many distinct values
+    private Map<String, SchemaNode> properties;
+    private SchemaNode items;
+
+    public SchemaNode(final int enumLimit) {
+        this.enumLimit = enumLimit;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    /**
+     * Visits a value.
+     *
+     * @param parser the parser positioned on the first event of the value.
+     * @param event  the current event.
+     */
+    public void accept(final JsonParser parser, final JsonParser.Event event) {
+        count++;
+        switch (event) {
+            case VALUE_NULL -> types |= NULL;
+            case VALUE_TRUE, VALUE_FALSE -> types |= BOOLEAN;
+            case VALUE_NUMBER -> types |= parser.isIntegralNumber() ? INTEGER : NUMBER;
+            case VALUE_STRING -> {
+                types |= STRING;
+                strings++;
+                if (enumCandidates != null && enumCandidates.add(parser.getString()) && enumCandidates.size() > enumLimit) {
+                    enumCandidates = null;
+                }
+            }
+            case START_OBJECT -> {
+                types |= OBJECT;
+                objects++;
+                if (properties == null) {
+                    properties = new LinkedHashMap<>();
+                }
+                var next = parser.next();
+                while (next != JsonParser.Event.END_OBJECT) {
+                    if (next != JsonParser.Event.KEY_NAME) {
+                        throw new IllegalStateException("Unexpected event: " + next);
+                    }
+                    properties.computeIfAbsent(parser.getString(), k -> new SchemaNode(enumLimit)).accept(parser, parser.next());
+                    next = parser.next();
+                }
+            }
+            case START_ARRAY -> {
+                types |= ARRAY;
+                if (items == null) {
+                    items = new SchemaNode(enumLimit);
+                }
+                var next = parser.next();
+                while (next != JsonParser.Event.END_ARRAY) {
+                    items.accept(parser, next);
+                    next = parser.next();
+                }
+            }
+            default -> throw new IllegalStateException("Unexpected event: " + event);
+        }
+    }
+
+    /**
+     * Merges another node (computed on other samples) in this one, {@code other} must not be reused.
+     *
+     * @param other the node to merge.
+     */
+    public void merge(final SchemaNode other) {
+        types |= other.types;
+        count += other.count;
+        objects += other.objects;
+        strings += other.strings;
+        if (enumCandidates != null) {
+            if (other.enumCandidates == null) {
+                enumCandidates = null;
+            } else {
+                enumCandidates.addAll(other.enumCandidates);
+                if (enumCandidates.size() > enumLimit) {
+                    enumCandidates = null;
+                }
+            }
+        }
+        if (other.properties != null) {
+            if (properties == null) {
+                properties = other.properties;
+            } else {
+                other.properties.forEach((name, node) -> properties.merge(name, node, (a, b) -> {
+                    a.merge(b);
+                    return a;
+                }));
+            }
+        }
+        if (other.items != null) {
+            if (items == null) {
+                items = other.items;
+            } else {
+                items.merge(other.items);
+            }
+        }
+    }
+
+    /**
+     * @param provider the JSON provider to create the schema with.
+     * @return the JSON Schema describing the visited values.
+     */
+    public JsonObject toSchema(final JsonProvider provider) {
+        final var schema = provider.createObjectBuilder();
+        final var names = new ArrayList<String>(7);
+        if ((types & NULL) != 0) {
+            names.add("null");
+        }
+        if ((types & BOOLEAN) != 0) {
+            names.add("boolean");
+        }
+        if ((types & NUMBER) != 0) {
+            names.add("number");
+        } else if ((types & INTEGER) != 0) {
+            names.add("integer");
+        }
+        if ((types & STRING) != 0) {
+            names.add("string");
+        }
+        if ((types & OBJECT) != 0) {
+            names.add("object");
+        }
+        if ((types & ARRAY) != 0) {
+            names.add("array");
+        }
+        if (names.size() == 1) {
+            schema.add("type", names.get(0));
+        } else if (!names.isEmpty()) {
+            schema.add("type", provider.createArrayBuilder(names));
+        }
+
+        // only strings with repeated values are considered as enums, mixed types would make it meaningless
+        if (types == STRING || types == (STRING | NULL)) {
+            if (enumCandidates != null && !enumCandidates.isEmpty() && strings > enumCandidates.size()) {
+                final var values = provider.createArrayBuilder(enumCandidates);
+                if ((types & NULL) != 0) {
+                    values.addNull();
+                }
+                schema.add("enum", values);
+            }
+        }
+        if (properties != null) {
+            final var props = provider.createObjectBuilder();
+            final var required = provider.createArrayBuilder();
+            boolean hasRequired = false;
+            for (final var property : properties.entrySet()) {
+                props.add(property.getKey(), property.getValue().toSchema(provider));
+                if (property.getValue().count == objects) {
+                    required.add(property.getKey());
+                    hasRequired = true;
+                }
+            }
+            schema.add("properties", props);
+            if (hasRequired) {
+                schema.add("required", required);
+            }
+        }
+        if (items != null && items.count > 0) {
+            schema.add("items", items.toSchema(provider));
+        }
+        return schema.build();
+    }
+}
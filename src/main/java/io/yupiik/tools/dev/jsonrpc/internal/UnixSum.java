@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2022 - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.tools.dev.jsonrpc.internal;
+
+import java.util.zip.Checksum;
+
+/**
+ * BSD/unix {@code sum} (16 bits rotating checksum).
+ * Incremental so it can be fed chunk by chunk.
+ */
+public class UnixSum implements Checksum {
+    private int value;
+
+    @Override
+    public void update(final int b) {
+        value = (((value >> 1) + ((value & 1) << 15)) + (b & 0xff)) & 0xffff;
+    }
+
+    @Override
+    public void update(final byte[] b, final int off, final int len) {
+        int current = value;
+        for (int i = off; i < off + len; i++) {
+            current = (((current >> 1) + ((current & 1) << 15)) + (b[i] & 0xff)) & 0xffff;
+        }
+        value = current;
+    }
+
+    @Override
+    public long getValue() {
+        return value;
+    }
+
+    @Override
+    public void reset() {
+        value = 0;
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2022 - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.tools.dev.jsonrpc.internal;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.nio.ByteOrder;
+
+/**
+ * Vector API flavor of {@link HexCodec}, it must only be loaded when {@code jdk.incubator.vector} module is present.
+ * <p>
+ * Each byte is widened to a short lane holding its two digits (first digit in the low byte) so storing the lanes
+ * in little endian order writes the digits in order, decoding does the opposite, no lane shuffling is needed.
+ * Methods process whole vectors and return the input index where the scalar loop must continue.
+ */
+final class VectorHexCodec {
+    private static final VectorSpecies<Short> SHORTS = ShortVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Byte> BYTES = ByteVector.SPECIES_PREFERRED.withShape(
+            VectorShape.forBitSize(SHORTS.vectorBitSize() / 2));
+    private static final int LENGTH = SHORTS.length(); // bytes processed per iteration
+
+    private VectorHexCodec() {
+        // no-op
+    }
+
+    static int encode(final byte[] in, final int from, final int to, final byte[] out, final int offset) {
+        int i = from;
+        int o = offset;
+        for (final int bound = to - LENGTH; i <= bound; i += LENGTH, o += 2 * LENGTH) {
+            final var value = (ShortVector) ByteVector.fromArray(BYTES, in, i)
+                    .convertShape(VectorOperators.B2S, SHORTS, 0)
+                    .lanewise(VectorOperators.AND, 0xff);
+            final var high = digits(value.lanewise(VectorOperators.LSHR, 4));
+            final var low = digits(value.lanewise(VectorOperators.AND, 0xf));
+            high.or(low.lanewise(VectorOperators.LSHL, 8)).intoByteArray(out, o, ByteOrder.LITTLE_ENDIAN);
+        }
+        return i;
+    }
+
+    // returns the index to continue from with the scalar loop which also reports invalid digits
+    static int decode(final byte[] in, final int from, final int to, final byte[] out, final int offset) {
+        int i = from;
+        int o = offset;
+        for (final int bound = to - 2 * LENGTH; i <= bound; i += 2 * LENGTH, o += LENGTH) {
+            final var pairs = ShortVector.fromByteArray(SHORTS, in, i, ByteOrder.LITTLE_ENDIAN);
+            final var high = value(pairs.lanewise(VectorOperators.AND, 0xff));
+            final var low = value(pairs.lanewise(VectorOperators.LSHR, 8));
+            final var decoded = high.lanewise(VectorOperators.LSHL, 4).or(low);
+            if (decoded.compare(VectorOperators.UNSIGNED_GT, 0xff).anyTrue()) { // an invalid digit is 0x100
+                return i;
+            }
+            decoded.convertShape(VectorOperators.S2B, BYTES, 0).reinterpretAsBytes().intoArray(out, o);
+        }
+        return i;
+    }
+
+    // nibble to '0'-'9' or 'a'-'f'
+    private static ShortVector digits(final ShortVector nibbles) {
+        return nibbles.add((short) '0').add(nibbles
+                .compare(VectorOperators.GT, 9)
+                .toVector()
+                .reinterpretAsShorts()
+                .and((short) ('a' - '0' - 10)));
+    }
+
+    // ASCII digit to its value or 0x100 if invalid
+    private static ShortVector value(final ShortVector ascii) {
+        final var digit = ascii.sub((short) '0');
+        final var letter = ascii.or((short) 0x20).sub((short) ('a' - 10));
+        return ShortVector.broadcast(SHORTS, (short) 0x100)
+                .blend(letter, letter.compare(VectorOperators.UNSIGNED_LE, 15).and(letter.compare(VectorOperators.UNSIGNED_GE, 10)))
+                .blend(digit, digit.compare(VectorOperators.UNSIGNED_LE, 9));
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2022 - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.tools.dev.jsonrpc;
+
+import io.yupiik.tools.dev.test.DevToolsSupport;
+import io.yupiik.uship.jsonrpc.core.api.JsonRpc;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DevToolsSupport
+class Base64Test {
+    @Inject
+    @JsonRpc
+    private Base64 base64;
+
+    @Test
+    void fileRoundTrip(@TempDir final Path work) throws IOException {
+        final var bytes = new byte[200_001];
+        new Random(1234).nextBytes(bytes);
+        final var source = Files.write(work.resolve("source.bin"), bytes);
+        final var encoded = work.resolve("encoded.txt");
+        final var decoded = work.resolve("decoded.bin");
+
+        final var encoding = base64.encodeFile(Base64.Base64EncodingMode.URL, source.toString(), encoded.toString());
+        assertEquals(Files.size(encoded), encoding.size());
+        assertEquals(java.util.Base64.getUrlEncoder().encodeToString(bytes), Files.readString(encoded));
+
+        final var decoding = base64.decodeFile(Base64.Base64DecodingMode.URL, encoded.toString(), decoded.toString());
+        assertEquals(bytes.length, decoding.size());
+        assertArrayEquals(bytes, Files.readAllBytes(decoded));
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2022 - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.tools.dev.jsonrpc;
+
+import io.yupiik.tools.dev.test.DevToolsSupport;
+import io.yupiik.uship.jsonrpc.core.api.JsonRpc;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+@DevToolsSupport
+class DigestTest {
+    private static final String CONTENT = "hello world\n";
+
+    @Inject
+    @JsonRpc
+    private Digest digest;
+
+    @Test
+    void text() {
+        assertEquals("b1kCrCNwJL3QwXbLkwY9xA==", digest.hashMD5(CONTENT));
+        assertEquals("qUiQTy8PR5uPgZdpSzAYSw0u0cHNKh7A+4XSmaGSpEc=", digest.hashSHA256(CONTENT));
+        assertEquals("03762", digest.hashUnixSum(CONTENT));
+        assertEquals("3733384285", digest.hashCkSum(CONTENT));
+        assertEquals("4294967295", digest.hashCkSum(""));
+        assertEquals("af083b2d", digest.hashCrc32(CONTENT));
+        assertEquals("f0ff7292", digest.hashCrc32c(CONTENT));
+    }
+
+    @Test
+    void file(@TempDir final Path work) throws IOException {
+        final var file = Files.writeString(work.resolve("content.txt"), CONTENT).toString();
+        assertEquals("b1kCrCNwJL3QwXbLkwY9xA==", digest.hashMD5File(file));
+        assertEquals("qUiQTy8PR5uPgZdpSzAYSw0u0cHNKh7A+4XSmaGSpEc=", digest.hashSHA256File(file));
+        assertEquals("03762", digest.hashUnixSumFile(file));
+        assertEquals("3733384285", digest.hashCkSumFile(file));
+        assertEquals("af083b2d", digest.hashCrc32File(file));
+        assertEquals("f0ff7292", digest.hashCrc32cFile(file));
+    }
+
+    @Test
+    void fileBiggerThanBuffer(@TempDir final Path work) throws IOException {
+        final var content = "0123456789abcdef".repeat(20_000); // > read buffer size
+        final var file = Files.writeString(work.resolve("content.txt"), content).toString();
+        assertEquals(digest.hashSHA512(content), digest.hashSHA512File(file));
+        assertEquals(digest.hashSHA1(content), digest.hashSHA1File(file));
+        assertEquals(digest.hashUnixSum(content), digest.hashUnixSumFile(file));
+        assertEquals(digest.hashCkSum(content), digest.hashCkSumFile(file));
+    }
+
+    @Test
+    void all(@TempDir final Path work) throws IOException {
+        final var file = Files.writeString(work.resolve("content.txt"), CONTENT).toString();
+        final var expected = Map.of(
+                "MD5", "b1kCrCNwJL3QwXbLkwY9xA==",
+                "SHA256", "qUiQTy8PR5uPgZdpSzAYSw0u0cHNKh7A+4XSmaGSpEc=",
+                "UNIX_SUM", "03762",
+                "CK_SUM", "3733384285");
+        final var algorithms = List.of(Digest.Algorithm.MD5, Digest.Algorithm.SHA256, Digest.Algorithm.UNIX_SUM, Digest.Algorithm.CK_SUM);
+        assertEquals(expected, digest.hashAll(algorithms, CONTENT, null, false));
+        assertEquals(expected, digest.hashAll(algorithms, null, file, false));
+        assertEquals(expected, digest.hashAll(algorithms, null, file, true));
+        assertEquals(Digest.Algorithm.values().length, digest.hashAll(null, CONTENT, null, true).size());
+    }
+
+    @Test
+    void tree(@TempDir final Path work) throws IOException {
+        final var content = "abcdefghij".repeat(1000);
+        final var file = Files.writeString(work.resolve("content.txt"), content).toString();
+
+        final var fromText = digest.hashTree(null, content, null, 3000, true);
+        assertEquals("xLqMADDLC0uPiz6VcRYs4Hf8d1up61QbJ/0VjOMClZU=", fromText.root());
+        assertEquals(4, fromText.chunks().size());
+        assertEquals(10_000, fromText.size());
+
+        final var fromFile = digest.hashTree(Digest.Algorithm.SHA256, null, file, 3000, false);
+        assertEquals(fromText.root(), fromFile.root());
+        assertNull(fromFile.chunks());
+    }
+
+    @Test
+    void treeFileChunks(@TempDir final Path work) throws IOException {
+        final var content = "abcdefghij".repeat(20_000);
+        final var file = Files.writeString(work.resolve("content.txt"), content).toString();
+        for (final int chunk : new int[]{7, 100_000, 300_000}) { // many slices, chunks bigger than the read buffer, single chunk
+            assertEquals(
+                    digest.hashTree(null, content, null, chunk, true),
+                    digest.hashTree(null, null, file, chunk, true),
+                    () -> "chunk=" + chunk);
+        }
+    }
+
+    @Test
+    void batch() {
+        final var values = IntStream.range(0, 1_000).mapToObj(i -> "value-" + i).toList();
+        final var digests = digest.hashBatch(Digest.Algorithm.SHA256, values);
+        assertEquals(values.size(), digests.size());
+        assertEquals(digest.hashSHA256("value-0"), digests.get(0));
+        assertEquals(digest.hashSHA256("value-999"), digests.get(999));
+        assertEquals(List.of("03762"), digest.hashBatch(Digest.Algorithm.UNIX_SUM, List.of(CONTENT)));
+    }
+}
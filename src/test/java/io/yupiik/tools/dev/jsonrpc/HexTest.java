@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2022 - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.tools.dev.jsonrpc;
+
+import io.yupiik.tools.dev.test.DevToolsSupport;
+import io.yupiik.uship.jsonrpc.core.api.JsonRpc;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HexFormat;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DevToolsSupport
+class HexTest {
+    @Inject
+    @JsonRpc
+    private Hex hex;
+
+    @Inject
+    @JsonRpc
+    private Base64 base64;
+
+    @Inject
+    @JsonRpc
+    private Digest digest;
+
+    @Test
+    void decodeUtf8() {
+        assertEquals("été", hex.decode(hex.encode("été")));
+    }
+
+    @Test
+    void toBase64() {
+        assertEquals("/wEA", hex.toBase64(null, "ff0100"));
+        assertEquals("_wE", hex.toBase64(Base64.Base64EncodingMode.URL_NO_PADDING, "ff01"));
+        assertThrows(IllegalArgumentException.class, () -> hex.toBase64(null, "abc"));
+    }
+
+    @Test
+    void fromBase64() {
+        assertEquals("ff0100", base64.toHex(null, "/wEA"));
+        assertEquals("ff01", base64.toHex(Base64.Base64DecodingMode.URL, "_wE"));
+    }
+
+    @Test
+    void digestOfEncodedBytes() {
+        final var expected = digest.hashSHA256("hello");
+        assertEquals(expected, digest.hashBase64(Digest.Algorithm.SHA256, null, base64.encode(null, "hello")));
+        assertEquals(expected, digest.hashHex(Digest.Algorithm.SHA256, hex.encode("hello")));
+    }
+
+    @Test
+    void fileRoundTrip(@TempDir final Path work) throws IOException {
+        final var bytes = new byte[100_001];
+        new Random(1234).nextBytes(bytes);
+        final var source = Files.write(work.resolve("source.bin"), bytes);
+        final var encoded = work.resolve("encoded.txt");
+        final var decoded = work.resolve("decoded.bin");
+
+        assertEquals(bytes.length * 2L, hex.encodeFile(source.toString(), encoded.toString()).size());
+        assertEquals(HexFormat.of().formatHex(bytes), Files.readString(encoded));
+
+        // dumps are often wrapped
+        Files.writeString(encoded, HexFormat.ofDelimiter(" ").withUpperCase().formatHex(bytes).replace("0 ", "0\n"));
+        assertEquals(bytes.length, hex.decodeFile(encoded.toString(), decoded.toString()).size());
+        assertArrayEquals(bytes, Files.readAllBytes(decoded));
+    }
+}
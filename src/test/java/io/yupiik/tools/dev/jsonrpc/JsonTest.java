@@ -15,13 +15,25 @@
  */
 package io.yupiik.tools.dev.jsonrpc;
 
+import io.yupiik.tools.dev.jsonrpc.internal.BudgetCharSequence;
+import io.yupiik.tools.dev.jsonrpc.internal.JsonSchema;
 import io.yupiik.tools.dev.test.DevToolsSupport;
 import io.yupiik.uship.jsonrpc.core.api.JsonRpc;
 import jakarta.inject.Inject;
 import jakarta.json.JsonString;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static java.util.stream.Collectors.joining;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @DevToolsSupport
 class JsonTest {
@@ -34,4 +46,277 @@ class JsonTest {
         assertEquals("{\"name\":\"value\"}", ((JsonString) json.unescape("{\\\"name\\\":\\\"value\\\"}")).getString());
         assertEquals("{\"name\":\"value\"}", ((JsonString) json.unescape("\"{\\\"name\\\":\\\"value\\\"}\"")).getString());
     }
+
+    @Test
+    void format() {
+        assertEquals("""
+                {
+                  "a":[
+                    1,
+                    {
+                      "b":"x"
+                    }
+                  ],
+                  "c":true
+                }""", json.sign("{\"a\":[1,{\"b\":\"x\"}],\"c\":true}"));
+    }
+
+    @Test
+    void minify() {
+        assertEquals("{\"a\":[1,2.5,{\"b\":null}],\"c\":\"d\"}", json.minify("""
+                {
+                  "a": [1, 2.5, { "b": null }],
+                  "c": "d"
+                }"""));
+    }
+
+    @Test
+    void formatFile(@TempDir final Path work) throws IOException {
+        final var source = Files.writeString(work.resolve("source.json"), "{\"a\":[1,{\"b\":\"x\"}],\"c\":true}");
+        final var formatted = work.resolve("formatted.json");
+        final var minified = work.resolve("minified.json");
+        json.formatFile(source.toString(), formatted.toString());
+        assertEquals(json.sign(Files.readString(source)), Files.readString(formatted));
+        assertEquals(Files.size(source), json.minifyFile(formatted.toString(), minified.toString()).size());
+        assertEquals(Files.readString(source), Files.readString(minified));
+    }
+
+    @Test
+    void ndjson() {
+        final var result = json.ndjson("{ \"a\": 1 }\r\n\n[1, 2]\n{bad\n\"s\" trailing\n", null, null);
+        assertEquals(5, result.lines());
+        assertEquals(2, result.invalid());
+        assertEquals(List.of(4L, 5L), result.errors().stream().map(Json.LineError::line).toList());
+        assertEquals("{\"a\":1}\n[1,2]\n", result.output());
+    }
+
+    @Test
+    void ndjsonFile(@TempDir final Path work) throws IOException {
+        final var source = Files.writeString(work.resolve("source.ndjson"), IntStream.range(0, 20_000)
+                .mapToObj(i -> i == 12_345 ? "{" : "{ \"id\": " + i + " }")
+                .collect(joining("\n")));
+        final var target = work.resolve("target.ndjson");
+        final var result = json.ndjson(null, source.toString(), target.toString());
+        assertEquals(20_000, result.lines());
+        assertEquals(List.of(12_346L), result.errors().stream().map(Json.LineError::line).toList());
+        assertEquals(Files.size(target), result.target().size());
+        final var lines = Files.readAllLines(target);
+        assertEquals(19_999, lines.size());
+        assertEquals("{\"id\":12344}", lines.get(12_344));
+        assertEquals("{\"id\":12346}", lines.get(12_345));
+    }
+
+    @Test
+    void validate() {
+        final var schema = """
+                {
+                  "$defs": {
+                    "node": {
+                      "type": "object",
+                      "properties": {
+                        "name": { "type": "string", "minLength": 2 },
+                        "children": { "type": "array", "items": { "$ref": "#/$defs/node" } }
+                      },
+                      "required": ["name"],
+                      "additionalProperties": false
+                    }
+                  },
+                  "type": "object",
+                  "properties": {
+                    "root": { "$ref": "#/$defs/node" },
+                    "count": { "type": "integer", "minimum": 0 },
+                    "kind": { "enum": ["a", "b"] }
+                  }
+                }""";
+        assertEquals(
+                new Json.Validation(true, List.of()),
+                json.validate(schema, "{\"root\":{\"name\":\"ab\",\"children\":[{\"name\":\"cd\"}]},\"count\":1.0,\"kind\":\"a\"}", null));
+        assertEquals(
+                new Json.Validation(false, List.of(
+                        new JsonSchema.Error("/root/children/0/other", "No value allowed"),
+                        new JsonSchema.Error("/root/children/0", "Missing required property 'name'"),
+                        new JsonSchema.Error("/count", "Expected a value >= 0"),
+                        new JsonSchema.Error("/kind", "Value not in [\"a\",\"b\"]"))),
+                json.validate(schema, "{\"root\":{\"name\":\"ab\",\"children\":[{\"other\":1}]},\"count\":-1,\"kind\":\"c\"}", null));
+    }
+
+    @Test
+    void validateBooleanSchemasAndMultipleOf() {
+        assertEquals(
+                new Json.Validation(false, List.of(new JsonSchema.Error("/b", "No value allowed"))),
+                json.validate("{\"properties\":{\"a\":true,\"b\":false}}", "{\"a\":1,\"b\":2}", null));
+        assertThrows(IllegalArgumentException.class, () -> json.validate("{\"multipleOf\":0}", "1", null));
+    }
+
+    @Test
+    void validateRejectsReferenceLoops() {
+        for (final var schema : List.of(
+                "{\"$ref\":\"#\"}",
+                "{\"$defs\":{\"a\":{\"$ref\":\"#/$defs/a\"}},\"$ref\":\"#/$defs/a\"}",
+                "{\"$defs\":{\"a\":{\"anyOf\":[{\"type\":\"string\"},{\"$ref\":\"#/$defs/b\"}]},\"b\":{\"not\":{\"$ref\":\"#/$defs/a\"}}}," +
+                        "\"properties\":{\"x\":{\"$ref\":\"#/$defs/a\"}}}")) {
+            assertThrows(IllegalArgumentException.class, () -> json.validate(schema, "1", null), schema);
+        }
+        // recursion through a property consumes the instance so it is fine
+        assertTrue(json.validate("{\"properties\":{\"child\":{\"$ref\":\"#\"}}}", "{\"child\":{\"child\":{}}}", null).valid());
+    }
+
+    @Test
+    void validatePatternBudget() {
+        final var error = assertThrows(
+                BudgetCharSequence.BudgetExceededException.class,
+                () -> json.validate("{\"pattern\":\"^((a+)\\\\2?)+$\"}", "\"" + "a".repeat(64) + "!\"", null));
+        assertTrue(error.getMessage().startsWith("Regex evaluation budget exceeded"), error::getMessage);
+    }
+
+    @Test
+    void diff() {
+        assertEquals("[" +
+                        "{\"op\":\"remove\",\"path\":\"/a\"}," +
+                        "{\"op\":\"replace\",\"path\":\"/b/c/1\",\"value\":9}," +
+                        "{\"op\":\"remove\",\"path\":\"/b/c/3\"}," +
+                        "{\"op\":\"add\",\"path\":\"/b/c/4\",\"value\":6}," +
+                        "{\"op\":\"add\",\"path\":\"/e~1f/0\",\"value\":{\"id\":0}}," +
+                        "{\"op\":\"add\",\"path\":\"/e~1f/2/x\",\"value\":true}," +
+                        "{\"op\":\"add\",\"path\":\"/h\",\"value\":null}]",
+                json.diff(
+                        "{\"a\":1,\"b\":{\"c\":[1,2,3,4,5],\"d\":\"x\"},\"e/f\":[{\"id\":1},{\"id\":2}],\"g\":1.0}",
+                        "{\"b\":{\"d\":\"x\",\"c\":[1,9,3,5,6]},\"e/f\":[{\"id\":0},{\"id\":1},{\"id\":2,\"x\":true}],\"g\":1,\"h\":null}",
+                        null, null).toString());
+        assertEquals("[]", json.diff("{\"a\":[1,{\"b\":2}]}", "{\"a\":[1,{\"b\":2.0}]}", null, null).toString());
+    }
+
+    @Test
+    void diffHashCollision() { // -5497558141054 has the same hash than null
+        assertEquals(
+                "[{\"op\":\"replace\",\"path\":\"\",\"value\":-5497558141054}]",
+                json.diff("null", "-5497558141054", null, null).toString());
+        assertEquals(
+                "[{\"op\":\"replace\",\"path\":\"/0\",\"value\":-5497558141054}]",
+                json.diff("[null,1]", "[-5497558141054,1]", null, null).toString());
+    }
+
+    @Test
+    void canonicalize() { // RFC 8785 sample
+        assertEquals(
+                "{\"literals\":[null,true,false],\"numbers\":[333333333.3333333,1e+30,4.5,0.002,1e-27]," +
+                        "\"string\":\"\u20ac$\\u000f\\nA'B\\\"\\\\\\\\\\\"/\"}",
+                json.canonicalize("""
+                        {
+                          "numbers": [333333333.33333329, 1E30, 4.50, 2e-3, 0.000000000000000000000000001],
+                          "string": "\\u20ac$\\u000F\\u000aA'\\u0042\\u0022\\u005c\\\\\\"\\/",
+                          "literals": [null, true, false]
+                        }""", null, null));
+    }
+
+    @Test
+    void canonicalizeDigest() {
+        assertEquals(
+                "r5St5DzLPDch/H6cvlNZhXARhhR0ddWHRWejfWaodaE=", // sha256 of {"a":[{"c":2,"d":1}],"b":1}
+                json.canonicalize("{\"b\": 1.0, \"a\": [{\"d\": 1, \"c\": 2}]}", null, Digest.Algorithm.SHA256));
+    }
+
+    @Test
+    void canonicalizeNumbers() { // RFC 8785 appendix B, last one is 2^-24 (closest 16 digits candidate does not round trip)
+        final var vectors = new String[][]{
+                {"0000000000000000", "0"},
+                {"8000000000000000", "0"},
+                {"0000000000000001", "5e-324"},
+                {"8000000000000001", "-5e-324"},
+                {"7fefffffffffffff", "1.7976931348623157e+308"},
+                {"ffefffffffffffff", "-1.7976931348623157e+308"},
+                {"4340000000000000", "9007199254740992"},
+                {"c340000000000000", "-9007199254740992"},
+                {"4430000000000000", "295147905179352830000"},
+                {"44b52d02c7e14af5", "9.999999999999997e+22"},
+                {"44b52d02c7e14af6", "1e+23"},
+                {"44b52d02c7e14af7", "1.0000000000000001e+23"},
+                {"444b1ae4d6e2ef4e", "999999999999999700000"},
+                {"444b1ae4d6e2ef4f", "999999999999999900000"},
+                {"444b1ae4d6e2ef50", "1e+21"},
+                {"3eb0c6f7a0b5ed8c", "9.999999999999997e-7"},
+                {"3eb0c6f7a0b5ed8d", "0.000001"},
+                {"41b3de4355555553", "333333333.3333332"},
+                {"41b3de4355555554", "333333333.33333325"},
+                {"41b3de4355555555", "333333333.3333333"},
+                {"41b3de4355555556", "333333333.3333334"},
+                {"41b3de4355555557", "333333333.33333343"},
+                {"becbf647612f3696", "-0.0000033333333333333333"},
+                {"43143ff3c1cb0959", "1424953923781206.2"},
+                {"3e70000000000000", "5.960464477539063e-8"}
+        };
+        for (final var vector : vectors) {
+            final double value = Double.longBitsToDouble(Long.parseUnsignedLong(vector[0], 16));
+            assertEquals("[" + vector[1] + "]", json.canonicalize("[" + value + "]", null, null), vector[0]);
+        }
+    }
+
+    @Test
+    void canonicalizeNested() {
+        assertEquals(
+                "{\"a\":[{\"x\":{\"m\":[1,{\"p\":true,\"q\":false}],\"n\":null}},2],\"b\":{\"c\":{\"d\":\"e\",\"f\":\"g\"}},\"z\":2}",
+                json.canonicalize("{\"z\":2,\"b\":{\"c\":{\"f\":\"g\",\"d\":\"e\"}},\"a\":[{\"x\":{\"n\":null,\"m\":[1,{\"q\":false,\"p\":true}]}},2]}", null, null));
+    }
+
+    @Test
+    void canonicalizeRejectsDuplicatesAndTrailingContent() {
+        assertThrows(IllegalArgumentException.class, () -> json.canonicalize("{\"z\":1,\"a\":0,\"z\":2}", null, null));
+        assertThrows(IllegalArgumentException.class, () -> json.canonicalize("[{\"a\":{\"b\":1,\"b\":1}}]", null, null));
+        assertThrows(RuntimeException.class, () -> json.canonicalize("{\"a\":1} {\"b\":2}", null, null));
+    }
+
+    @Test
+    void canonicalizeLoneSurrogate() {
+        assertThrows(IllegalArgumentException.class, () -> json.canonicalize("{\"a\":\"\\ud800x\"}", null, null));
+        assertThrows(IllegalArgumentException.class, () -> json.canonicalize("{\"\\udc00\":1}", null, null));
+        assertEquals("\"\ud83d\ude00\"", json.canonicalize("\"\\ud83d\\ude00\"", null, null));
+    }
+
+    @Test
+    void inferSchema() {
+        assertEquals("{" +
+                        "\"$schema\":\"https://json-schema.org/draft/2020-12/schema\",\"type\":\"object\",\"properties\":{" +
+                        "\"id\":{\"type\":\"integer\"}," +
+                        "\"kind\":{\"type\":\"string\",\"enum\":[\"a\",\"b\"]}," +
+                        "\"tags\":{\"type\":\"array\",\"items\":{\"type\":\"string\"}}," +
+                        "\"price\":{\"type\":\"number\"}," +
+                        "\"meta\":{\"type\":[\"null\",\"object\"],\"properties\":{\"x\":{\"type\":\"boolean\"}},\"required\":[\"x\"]}}," +
+                        "\"required\":[\"id\",\"kind\",\"tags\",\"price\"]}",
+                json.inferSchema("""
+                        [
+                          {"id": 1, "kind": "a", "tags": ["x"], "price": 1.5, "meta": {"x": true}},
+                          {"id": 2, "kind": "b", "tags": [], "price": 2, "meta": null},
+                          {"id": 3, "kind": "a", "tags": ["y", "z"], "price": 3}
+                        ]""", null, false, null).toString());
+    }
+
+    @Test
+    void inferSchemaNdJson(@TempDir final Path work) throws IOException {
+        final var source = Files.writeString(work.resolve("samples.ndjson"), IntStream.range(0, 20_000)
+                .mapToObj(i -> "{\"id\":" + i + ",\"kind\":\"" + (i % 2 == 0 ? "even" : "odd") + "\"" + (i % 3 == 0 ? ",\"third\":true" : "") + "}")
+                .collect(joining("\n")));
+        final var schema = json.inferSchema(null, source.toString(), true, null);
+        assertEquals(List.of("id", "kind"), schema.getJsonArray("required").getValuesAs(JsonString::getString));
+        assertEquals(
+                "{\"type\":\"string\",\"enum\":[\"even\",\"odd\"]}",
+                schema.getJsonObject("properties").getJsonObject("kind").toString());
+        assertEquals(
+                "{\"type\":\"boolean\"}",
+                schema.getJsonObject("properties").getJsonObject("third").toString());
+    }
+
+    @Test
+    void query() {
+        final var document = "{\"skip\":{\"deep\":[1,2]},\"a/b\":1,\"list\":[{\"id\":0},{\"id\":1,\"tags\":[\"t1\",\"t2\"]}]}";
+        assertEquals("\"t2\"", json.query("/list/1/tags/1", document, null).toString());
+        assertEquals("1", json.query("/a~1b", document, null).toString());
+        assertEquals("{\"id\":0}", json.query("$.list[0]", document, null).toString());
+        assertEquals("\"t1\"", json.query("$['list'][1].tags[0]", document, null).toString());
+        assertThrows(IllegalArgumentException.class, () -> json.query("/list/2", document, null));
+    }
+
+    @Test
+    void queryStopsOnceFound() { // the remaining (invalid) part is never read
+        assertEquals("{\"b\":1}", json.query("/a", "{\"a\":{\"b\":1},\"c\":[1,2", null).toString());
+    }
 }
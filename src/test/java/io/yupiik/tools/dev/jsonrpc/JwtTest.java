@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2022 - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.tools.dev.jsonrpc;
+
+import io.yupiik.tools.dev.test.DevToolsSupport;
+import io.yupiik.uship.jsonrpc.core.api.JsonRpc;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.MGF1ParameterSpec;
+import java.security.spec.PSSParameterSpec;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DevToolsSupport
+class JwtTest {
+    @Inject
+    @JsonRpc
+    private Jwt jwt;
+
+    @Test
+    void read() {
+        final var token = signingInput("{\"alg\":\"none\"}") + '.';
+        final var result = jwt.encode(token);
+        assertEquals("x", result.data().payload().getString("sub"));
+        assertSame(result.ui(), jwt.encode(token).ui()); // precompiled template
+        assertEquals("error", jwt.encode("invalid").ui().asJsonObject()
+                .getJsonArray("children").getJsonObject(0)
+                .getJsonObject("props").getJsonObject("message").getString("$eval"));
+        assertEquals("Invalid JWT, expected 3 segments", jwt.encode("invalid").data().error());
+    }
+
+    @Test
+    void readBatch() {
+        final var tokens = String.join("\n",
+                "Bearer " + token("{\"alg\":\"RS256\",\"kid\":\"k1\"}", "{\"iss\":\"a\",\"aud\":[\"x\",\"y\"],\"exp\":1}"),
+                "",
+                "invalid",
+                token("{\"alg\":\"RS256\",\"kid\":\"k1\"}", "{\"iss\":\"b\",\"aud\":\"x\",\"exp\":32503680000}"),
+                token("{\"alg\":\"ES256\"}", "{\"iss\":\"a\"}"));
+
+        final var result = jwt.readBatch(tokens, null);
+        assertEquals(4, result.tokens());
+        assertEquals(1, result.invalid());
+        assertEquals(Map.of("a", 2L, "b", 1L), result.issuers());
+        assertEquals(Map.of("x", 2L, "y", 1L), result.audiences());
+        assertEquals(Map.of("k1", 2L), result.kids());
+        assertEquals(List.of("RS256", "ES256"), List.copyOf(result.algorithms().keySet()));
+        assertEquals(1L, result.minExpiration());
+        assertEquals(32503680000L, result.maxExpiration());
+        assertEquals(1, result.expired());
+        assertEquals(0.5, result.expiredRatio());
+        assertNull(result.details());
+
+        final var details = jwt.readBatch(tokens, true).details();
+        assertEquals(4, details.size());
+        assertEquals("Invalid JWT, expected 3 segments", details.get(1).error());
+        assertEquals(List.of("x"), details.get(2).audiences());
+    }
+
+    @Test
+    void verifyHmac() throws GeneralSecurityException {
+        final var mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec("secret".getBytes(UTF_8), "HmacSHA256"));
+        final var signingInput = signingInput("{\"alg\":\"HS256\"}");
+        final var token = signingInput + '.' + base64(mac.doFinal(signingInput.getBytes(US_ASCII)));
+
+        final var result = jwt.verify(token, "secret", null);
+        assertTrue(result.valid(), result::toString);
+        assertTrue(result.expired());
+        assertEquals("x", result.payload().getString("sub"));
+        assertFalse(jwt.verify(token, "wrong", null).valid());
+    }
+
+    @Test
+    void verifyPem() throws GeneralSecurityException {
+        final var generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        final var keyPair = generator.generateKeyPair();
+        final var token = sign("{\"alg\":\"ES256\"}", "SHA256withECDSAinP1363Format", keyPair.getPrivate());
+        final var pem = "-----BEGIN PUBLIC KEY-----\n" +
+                Base64.getMimeEncoder().encodeToString(keyPair.getPublic().getEncoded()) +
+                "\n-----END PUBLIC KEY-----\n";
+
+        assertTrue(jwt.verify(token, pem, null).valid());
+        // a public key must not be usable as HMAC secret
+        assertFalse(jwt.verify(signingInput("{\"alg\":\"HS256\"}") + ".c2ln", pem, null).valid());
+    }
+
+    @Test
+    void verifyJwks(@TempDir final Path work) throws GeneralSecurityException, IOException {
+        final var rsaGenerator = KeyPairGenerator.getInstance("RSA");
+        rsaGenerator.initialize(2048);
+        final var rsa = rsaGenerator.generateKeyPair();
+        final var ecGenerator = KeyPairGenerator.getInstance("EC");
+        ecGenerator.initialize(new ECGenParameterSpec("secp384r1"));
+        final var ec = ecGenerator.generateKeyPair();
+
+        final var rsaPublic = (RSAPublicKey) rsa.getPublic();
+        final var ecPublic = (ECPublicKey) ec.getPublic();
+        final var jwks = Files.writeString(work.resolve("jwks.json"), "{\"keys\":[" +
+                "{\"kty\":\"RSA\",\"kid\":\"rsa\"," +
+                "\"n\":\"" + base64(rsaPublic.getModulus().toByteArray()) + "\"," +
+                "\"e\":\"" + base64(rsaPublic.getPublicExponent().toByteArray()) + "\"}," +
+                "{\"kty\":\"EC\",\"kid\":\"ec\",\"crv\":\"P-384\"," +
+                "\"x\":\"" + base64(ecPublic.getW().getAffineX().toByteArray()) + "\"," +
+                "\"y\":\"" + base64(ecPublic.getW().getAffineY().toByteArray()) + "\"}," +
+                "{\"kty\":\"oct\",\"kid\":\"hmac\",\"k\":\"" + base64("secret".getBytes(UTF_8)) + "\"}]}").toString();
+
+        assertTrue(jwt.verify(sign("{\"alg\":\"RS256\",\"kid\":\"rsa\"}", "SHA256withRSA", rsa.getPrivate()), null, jwks).valid());
+        assertTrue(jwt.verify(sign("{\"alg\":\"ES384\",\"kid\":\"ec\"}", "SHA384withECDSAinP1363Format", ec.getPrivate()), null, jwks).valid());
+        assertFalse(jwt.verify(sign("{\"alg\":\"RS256\",\"kid\":\"ec\"}", "SHA256withRSA", rsa.getPrivate()), null, jwks).valid());
+
+        final var mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec("secret".getBytes(UTF_8), "HmacSHA256"));
+        final var hmacSigningInput = signingInput("{\"alg\":\"HS256\",\"kid\":\"hmac\"}");
+        assertTrue(jwt.verify(hmacSigningInput + '.' + base64(mac.doFinal(hmacSigningInput.getBytes(US_ASCII))), null, jwks).valid());
+        assertEquals(
+                "No key 'missing' in the JWKS",
+                jwt.verify(sign("{\"alg\":\"RS256\",\"kid\":\"missing\"}", "SHA256withRSA", rsa.getPrivate()), null, jwks).error());
+    }
+
+    @Test
+    void verifyEdDsaJwks(@TempDir final Path work) throws GeneralSecurityException, IOException {
+        final var keyPair = KeyPairGenerator.getInstance("Ed25519").generateKeyPair();
+        final var encoded = keyPair.getPublic().getEncoded(); // X.509, the raw key is the 32 last bytes
+        final var jwks = Files.writeString(work.resolve("jwks.json"), "{\"keys\":[" +
+                "{\"kty\":\"OKP\",\"crv\":\"Ed25519\"," +
+                "\"x\":\"" + base64(Arrays.copyOfRange(encoded, encoded.length - 32, encoded.length)) + "\"}]}").toString();
+
+        final var token = sign("{\"alg\":\"EdDSA\"}", "Ed25519", keyPair.getPrivate());
+        assertTrue(jwt.verify(token, null, jwks).valid(), () -> jwt.verify(token, null, jwks).toString());
+        assertFalse(jwt.verify(token.substring(0, token.length() - 4) + "AAAA", null, jwks).valid());
+        // the index is not a kid
+        assertEquals(
+                "No key '0' in the JWKS",
+                jwt.verify(sign("{\"alg\":\"EdDSA\",\"kid\":\"0\"}", "Ed25519", keyPair.getPrivate()), null, jwks).error());
+    }
+
+    @Test
+    void verifyPss() throws GeneralSecurityException {
+        final var generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        final var keyPair = generator.generateKeyPair();
+        final var signingInput = signingInput("{\"alg\":\"PS256\"}");
+        final var signature = Signature.getInstance("RSASSA-PSS");
+        signature.setParameter(new PSSParameterSpec("SHA-256", "MGF1", MGF1ParameterSpec.SHA256, 32, 1));
+        signature.initSign(keyPair.getPrivate());
+        signature.update(signingInput.getBytes(US_ASCII));
+        final var token = signingInput + '.' + base64(signature.sign());
+        final var pem = "-----BEGIN PUBLIC KEY-----\n" +
+                Base64.getMimeEncoder().encodeToString(keyPair.getPublic().getEncoded()) +
+                "\n-----END PUBLIC KEY-----\n";
+
+        assertTrue(jwt.verify(token, pem, null).valid());
+        // same key but PKCS#1 v1.5 signature
+        assertFalse(jwt.verify(sign("{\"alg\":\"PS256\"}", "SHA256withRSA", keyPair.getPrivate()), pem, null).valid());
+    }
+
+    private String sign(final String header, final String algorithm, final PrivateKey key) throws GeneralSecurityException {
+        final var signingInput = signingInput(header);
+        final var signature = Signature.getInstance(algorithm);
+        signature.initSign(key);
+        signature.update(signingInput.getBytes(US_ASCII));
+        return signingInput + '.' + base64(signature.sign());
+    }
+
+    private String signingInput(final String header) {
+        return base64(header.getBytes(UTF_8)) + '.' + base64("{\"sub\":\"x\",\"exp\":1}".getBytes(UTF_8));
+    }
+
+    private String token(final String header, final String payload) {
+        return base64(header.getBytes(UTF_8)) + '.' + base64(payload.getBytes(UTF_8)) + ".c2ln";
+    }
+
+    private String base64(final byte[] value) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value);
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2022 - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.tools.dev.jsonrpc;
+
+import io.yupiik.tools.dev.jsonrpc.internal.BudgetCharSequence;
+import io.yupiik.tools.dev.test.DevToolsSupport;
+import io.yupiik.uship.jsonrpc.core.api.JsonRpc;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static java.util.stream.Collectors.joining;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DevToolsSupport
+class RegexTest {
+    @Inject
+    @JsonRpc
+    private Regex regex;
+
+    @Test
+    void flags() {
+        assertFalse(regex.matches("hello", "HELLO", null).matches());
+        assertTrue(regex.matches("hello", "HELLO", List.of(Regex.Flag.CASE_INSENSITIVE)).matches());
+        assertEquals(2, regex.find("^a", "a\na", List.of(Regex.Flag.MULTILINE), null, null, null, null).finds().size());
+    }
+
+    @Test
+    void page() {
+        final var text = "a1 b2 c3 d4 e5";
+        assertEquals(
+                new Regex.Finds(List.of(new Regex.Find(3, 5, List.of("b2")), new Regex.Find(6, 8, List.of("c3"))), null, true),
+                regex.find("[a-z]([0-9])", text, null, 1, 2, null, null));
+        assertEquals(
+                new Regex.Finds(List.of(new Regex.Find(12, 14, null)), null, false),
+                regex.find("[a-z]([0-9])", text, null, 4, 10, null, true));
+        assertEquals(new Regex.Finds(null, 5L, false), regex.find("[a-z]([0-9])", text, null, null, null, true, null));
+    }
+
+    @Test
+    void findMany() {
+        assertEquals(
+                new Regex.ManyFinds(List.of(
+                        new Regex.ManyFind(1, 1, 4), // she
+                        new Regex.ManyFind(0, 2, 4), // he
+                        new Regex.ManyFind(2, 2, 6), // hers
+                        new Regex.ManyFind(3, 7, 9), // 12
+                        new Regex.ManyFind(4, 10, 13), // aba
+                        new Regex.ManyFind(5, 18, 20))), // xz
+                regex.findMany(List.of("he", "she", "hers", "[0-9]+", "(a)b\\1", "x(y)?z"), "ushers 12 aba abx xz", null));
+
+        // a combined match hides the other combined patterns starting inside it
+        assertEquals(
+                new Regex.ManyFinds(List.of(new Regex.ManyFind(0, 0, 3))),
+                regex.findMany(List.of("a.c", "b.d"), "abcd", null));
+    }
+
+    @Test
+    void findManyFlags() {
+        assertEquals(
+                new Regex.ManyFinds(List.of(new Regex.ManyFind(1, 0, 4), new Regex.ManyFind(0, 5, 9))),
+                regex.findMany(List.of("(a)|", "a.c?"), "a.c? (a)|", List.of(Regex.Flag.LITERAL)));
+        assertEquals(
+                new Regex.ManyFinds(List.of(new Regex.ManyFind(0, 0, 3), new Regex.ManyFind(1, 1, 4))),
+                regex.findMany(List.of("a b c # abc", "b c d"), "abcd", List.of(Regex.Flag.COMMENTS)));
+        assertEquals(
+                new Regex.ManyFinds(List.of(new Regex.ManyFind(0, 0, 2), new Regex.ManyFind(1, 3, 5))),
+                regex.findMany(List.of("ab", "c[d]"), "AB CD", List.of(Regex.Flag.CASE_INSENSITIVE)));
+    }
+
+    @Test
+    void findManyAlternationBreakingPatterns() {
+        assertEquals(
+                new Regex.ManyFinds(List.of(
+                        new Regex.ManyFind(0, 0, 3), new Regex.ManyFind(1, 4, 6), new Regex.ManyFind(2, 7, 9), new Regex.ManyFind(3, 10, 12))),
+                regex.findMany(List.of("\\Qa|b", "c.", "(?x)d e # comment", "f+"), "a|b cc de ff", null));
+    }
+
+    @Test
+    void grep(@TempDir final Path work) throws IOException {
+        final var file = Files.writeString(work.resolve("app.log"), IntStream.range(0, 10_000)
+                .mapToObj(i -> i % 1000 == 1 ? "ERROR failure " + i : "INFO line " + i)
+                .collect(joining("\r\n", "", "\n")));
+        final var result = regex.grep("^ERROR .* (\\d+)$", file.toString(), null, 1, 3);
+        assertTrue(result.truncated());
+        assertEquals(List.of(
+                new Regex.GrepMatch(2, "ERROR failure 1", List.of("INFO line 0"), List.of("INFO line 2")),
+                new Regex.GrepMatch(1002, "ERROR failure 1001", List.of("INFO line 1000"), List.of("INFO line 1002")),
+                new Regex.GrepMatch(2002, "ERROR failure 2001", List.of("INFO line 2000"), List.of("INFO line 2002"))), result.matches());
+
+        final var all = regex.grep("ERROR", file.toString(), null, null, null);
+        assertEquals(10, all.matches().size());
+        assertEquals(10_000, all.scannedLines());
+        assertFalse(all.truncated());
+    }
+
+    @Test
+    void profile() {
+        final var profile = regex.profile("[a-z]+@[a-z]+\\.com", "contact: foo@bar.com, other@baz.com", null, Regex.Operation.FIND, 10, 50);
+        assertEquals(Regex.Operation.FIND, profile.operation());
+        assertTrue(profile.operations() > 0);
+        assertTrue(profile.operationsPerSecond() > 0);
+        assertTrue(profile.p50() <= profile.p90() && profile.p90() <= profile.p99() && profile.p99() <= profile.max(), profile::toString);
+    }
+
+    @Test
+    void budget() {
+        final var error = assertThrows(
+                BudgetCharSequence.BudgetExceededException.class,
+                () -> regex.find("^((a+)\\2?)+$", "a".repeat(64) + "!", null, null, null, null, null));
+        assertTrue(error.getMessage().startsWith("Regex evaluation budget exceeded"), error::getMessage);
+    }
+
+    @Test
+    void profileBudget() {
+        final var error = assertThrows(
+                BudgetCharSequence.BudgetExceededException.class,
+                () -> regex.profile("^((a+)\\2?)+$", "a".repeat(64) + "!", null, Regex.Operation.MATCHES, 0, 50));
+        assertTrue(error.getMessage().startsWith("Regex evaluation budget exceeded"), error::getMessage);
+    }
+
+    @Test
+    void cache() {
+        final var before = regex.cacheStats();
+        regex.find("cached-[0-9]+", "cached-1", null, null, null, null, null);
+        regex.find("cached-[0-9]+", "cached-2", null, null, null, null, null);
+        regex.find("cached-[0-9]+", "cached-3", List.of(Regex.Flag.DOTALL), null, null, null, null); // other flags, other pattern
+        final var after = regex.cacheStats();
+        assertEquals(1, after.hits() - before.hits());
+        assertEquals(2, after.misses() - before.misses());
+    }
+}
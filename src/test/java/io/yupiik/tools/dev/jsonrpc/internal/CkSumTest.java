@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2022 - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.tools.dev.jsonrpc.internal;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CkSumTest {
+    @Test
+    void bulkMatchesByteByByte() {
+        final var data = new byte[1024];
+        new Random(1234).nextBytes(data);
+        for (int offset = 0; offset < 16; offset++) {
+            for (int length = 0; length < data.length - offset; length += 7) {
+                final var bulk = new CkSum();
+                bulk.update(data, offset, length);
+
+                final var reference = new CkSum();
+                for (int i = offset; i < offset + length; i++) {
+                    reference.update(data[i]);
+                }
+
+                assertEquals(reference.getValue(), bulk.getValue(), () -> "offset=" + offset + ", length=" + length);
+            }
+        }
+    }
+
+    @Test
+    void chunked() {
+        final var data = new byte[4096];
+        new Random(5678).nextBytes(data);
+
+        final var oneShot = new CkSum();
+        oneShot.update(data, 0, data.length);
+
+        final var chunked = new CkSum();
+        for (int i = 0; i < data.length; i += 13) {
+            chunked.update(data, i, Math.min(13, data.length - i));
+        }
+
+        assertEquals(oneShot.getValue(), chunked.getValue());
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2022 - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.tools.dev.jsonrpc.internal;
+
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class CryptoEnginesTest {
+    @Test
+    void reuseReleasedEngine() throws Exception {
+        final var engines = new CryptoEngines();
+        final MessageDigest first;
+        try (final var pooled = engines.messageDigest("SHA-256")) {
+            first = pooled.get();
+            first.update("dirty".getBytes(StandardCharsets.UTF_8)); // must be reset when released
+        }
+        try (final var pooled = engines.messageDigest("SHA-256")) {
+            assertSame(first, pooled.get());
+            assertArrayEquals(
+                    MessageDigest.getInstance("SHA-256").digest("test".getBytes(StandardCharsets.UTF_8)),
+                    pooled.get().digest("test".getBytes(StandardCharsets.UTF_8)));
+        }
+    }
+
+    @Test
+    void concurrentBorrowsGetDistinctEngines() {
+        final var engines = new CryptoEngines();
+        try (final var first = engines.messageDigest("SHA-256");
+             final var second = engines.messageDigest("SHA-256")) {
+            assertNotSame(first.get(), second.get());
+        }
+    }
+
+    @Test
+    void keyedEnginesAreNotReused() throws Exception {
+        final var engines = new CryptoEngines();
+        final var mac = engines.mac("HmacSHA256");
+        mac.init(new SecretKeySpec("secret".getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        assertNotSame(mac, engines.mac("HmacSHA256"));
+        assertNotSame(engines.signature("SHA256withRSA"), engines.signature("SHA256withRSA"));
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2022 - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.tools.dev.jsonrpc.internal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HexCodecTest {
+    @Test
+    void roundTrip() {
+        final var random = new Random(1234);
+        for (int length = 0; length < 2_500; length += 7) { // covers scalar only and vectorized inputs
+            final var bytes = new byte[length];
+            random.nextBytes(bytes);
+            final var encoded = HexCodec.encode(bytes);
+            assertEquals(HexFormat.of().formatHex(bytes), encoded);
+            assertArrayEquals(bytes, HexCodec.decode(encoded));
+            assertArrayEquals(bytes, HexCodec.decode(encoded.toUpperCase()));
+        }
+    }
+
+    @Test
+    void invalid() {
+        final var valid = "00".repeat(1_500);
+        for (final int position : new int[]{0, 1, 130, 257, 2_047, 2_999}) {
+            for (final char invalid : new char[]{'g', 'G', '/', ':', '@', '`', 'é'}) {
+                final var value = valid.substring(0, position) + invalid + valid.substring(position + 1);
+                final var error = assertThrows(IllegalArgumentException.class, () -> HexCodec.decode(value));
+                assertTrue(error.getMessage().startsWith("Invalid hexadecimal character at index " + position + ":"), error::getMessage);
+            }
+        }
+        assertThrows(IllegalArgumentException.class, () -> HexCodec.decode("abc"));
+    }
+
+    /**
+     * Compares {@link HexFormat}, the scalar loop and {@link HexCodec} (vectorized when the JVM has
+     * {@code --add-modules jdk.incubator.vector}) from 16B to 64MB.
+     * Run it with {@code mvn test -Dtest=HexCodecTest#benchmark -Dhex-codec-benchmark=true}.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "hex-codec-benchmark", matches = "true")
+    void benchmark() {
+        final var format = HexFormat.of();
+        final var random = new Random(1234);
+        System.out.println("Vectorized: " + HexCodec.isVectorized());
+        System.out.printf("%10s %10s %14s %14s %14s %14s %14s %14s%n", "size", "unit",
+                "format-enc", "scalar-enc", "codec-enc", "format-dec", "scalar-dec", "codec-dec");
+        for (int size = 16; size <= 64 * 1024 * 1024; size *= 4) {
+            final var bytes = new byte[size];
+            random.nextBytes(bytes);
+            final var hex = format.formatHex(bytes);
+            final var ascii = hex.getBytes(StandardCharsets.ISO_8859_1);
+            System.out.printf("%10d %10s %14.1f %14.1f %14.1f %14.1f %14.1f %14.1f%n", size, "MB/s",
+                    throughput(size, () -> format.formatHex(bytes)),
+                    throughput(size, () -> {
+                        final var out = new byte[bytes.length * 2];
+                        HexCodec.encodeScalar(bytes, 0, bytes.length, out, 0);
+                        return new String(out, StandardCharsets.ISO_8859_1);
+                    }),
+                    throughput(size, () -> HexCodec.encode(bytes)),
+                    throughput(size, () -> format.parseHex(hex)),
+                    throughput(size, () -> {
+                        final var out = new byte[ascii.length / 2];
+                        HexCodec.decodeScalar(hex.getBytes(StandardCharsets.ISO_8859_1), 0, ascii.length, out, 0);
+                        return out;
+                    }),
+                    throughput(size, () -> HexCodec.decode(hex)));
+        }
+    }
+
+    // MB (of binary data) per second, after a 1s warmup, each measure lasts about 500ms
+    private static double throughput(final int size, final java.util.function.Supplier<Object> operation) {
+        Object last = null;
+        for (final long end = System.nanoTime() + 1_000_000_000L; System.nanoTime() < end; ) {
+            last = operation.get();
+        }
+        long operations = 0;
+        final long start = System.nanoTime();
+        final long end = start + 500_000_000L;
+        long now;
+        do {
+            last = operation.get();
+            operations++;
+        } while ((now = System.nanoTime()) < end);
+        if (last == null || Arrays.hashCode(new int[]{last.hashCode()}) == 42) { // keeps the result alive
+            System.out.print("");
+        }
+        return operations * (double) size / ((now - start) / 1_000_000_000.) / (1024 * 1024);
+    }
+}
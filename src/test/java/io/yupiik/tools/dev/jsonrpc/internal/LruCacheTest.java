@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2022 - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.tools.dev.jsonrpc.internal;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LruCacheTest {
+    @Test
+    void referencedEntriesSurviveEviction() {
+        final var cache = new LruCache<Integer, String>(3);
+        IntStream.range(0, 3).forEach(i -> cache.computeIfAbsent(i, String::valueOf));
+        cache.computeIfAbsent(0, k -> "recomputed"); // hit, 0 gets a second chance
+        cache.computeIfAbsent(3, String::valueOf); // evicts 1
+        assertEquals(3, cache.size());
+        assertEquals("0", cache.computeIfAbsent(0, k -> "recomputed"));
+        assertEquals("recomputed", cache.computeIfAbsent(1, k -> "recomputed"));
+        assertEquals(new LruCache.Stats(2, 5, 3), cache.stats());
+    }
+
+    @Test
+    void concurrentAccessesStayBounded() throws Exception {
+        final var cache = new LruCache<Integer, Integer>(16);
+        final var executor = Executors.newFixedThreadPool(4);
+        try {
+            final var tasks = IntStream.range(0, 4)
+                    .mapToObj(t -> executor.submit(() -> IntStream.range(0, 10_000).forEach(i -> {
+                        final Integer key = i % (t + 1 == 4 ? 64 : 8);
+                        assertEquals(key, cache.computeIfAbsent(key, k -> k));
+                    })))
+                    .toList();
+            for (final Future<?> task : tasks) {
+                task.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(16, cache.size());
+        assertEquals(40_000, cache.stats().hits() + cache.stats().misses());
+    }
+}